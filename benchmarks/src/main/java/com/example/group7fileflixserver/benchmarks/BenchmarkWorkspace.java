@@ -0,0 +1,34 @@
+package com.example.group7fileflixserver.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Points the server at a throwaway database, upload directory and log file. Must run before any server
+// class is touched, because Database and FileServer read these properties when they load.
+final class BenchmarkWorkspace {
+
+    private static Path root;
+
+    private BenchmarkWorkspace() {
+    }
+
+    static synchronized Path init() {
+        if (root == null) {
+            try {
+                root = Files.createTempDirectory("fileflix-bench");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            System.setProperty("fileflix.db.path", root.resolve("bench.db").toString());
+            System.setProperty("fileflix.upload.dir", root.resolve("uploads").toString());
+            System.setProperty("fileflix.log.file", root.resolve("bench-log.txt").toString());
+            // The server prints a line per command; keep it out of the JMH output
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        return root;
+    }
+}
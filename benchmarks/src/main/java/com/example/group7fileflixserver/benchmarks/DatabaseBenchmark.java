@@ -0,0 +1,106 @@
+package com.example.group7fileflixserver.benchmarks;
+
+import com.example.group7fileflixserver.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Metadata operations on every UPLOAD, RETRIEVE and LOGIN, against a temporary SQLite file.
+// BCrypt runs at cost 4 so authenticateUser mostly measures the database side. The *Unpooled
+// variants run the same SQL the way Database did before the connection pool - a new
+// connection and statement per call - as the baseline for the pooled numbers.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dfileflix.bcrypt.cost=4")
+public class DatabaseBenchmark {
+
+    private static final String USER = "benchuser";
+    private static final String BLOB = "0".repeat(64);
+
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup
+    public void setup() throws SQLException {
+        BenchmarkWorkspace.init();
+        Database.initialize();
+        if (!Database.isUsernameTaken(USER)) {
+            Database.registerUser(USER, "benchpassword");
+        }
+        Database.saveFile(USER, "existing.bin", 1024, BLOB);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Database.close();
+    }
+
+    @Benchmark
+    public boolean saveFile() {
+        return Database.saveFile(USER, "file-" + counter.incrementAndGet(), 1024, BLOB);
+    }
+
+    @Benchmark
+    public void saveFileUnpooled() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(Database.URL);
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO files (username,filename,size,blob_hash,uploaded_at) VALUES (?, ?, ?, ?, ?)")) {
+            stmt.setString(1, USER);
+            stmt.setString(2, "unpooled-" + counter.incrementAndGet());
+            stmt.setLong(3, 1024);
+            stmt.setString(4, BLOB);
+            stmt.setLong(5, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+
+    // Not cached in memory, so every call reaches SQLite
+    @Benchmark
+    public long storageUsed() throws SQLException {
+        return Database.storageUsed(USER);
+    }
+
+    @Benchmark
+    public long storageUsedUnpooled() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(Database.URL);
+             PreparedStatement stmt = conn.prepareStatement("SELECT COALESCE(SUM(size), 0) FROM files WHERE username = ?")) {
+            stmt.setString(1, USER);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean fileExistsHit() {
+        return Database.fileExistsForUser(USER, "existing.bin");
+    }
+
+    @Benchmark
+    public boolean fileExistsMiss() {
+        return Database.fileExistsForUser(USER, "missing.bin");
+    }
+
+    @Benchmark
+    public boolean authenticateUser() {
+        return Database.authenticateUser(USER, "benchpassword");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.group7fileflixserver.benchmarks;
+
+import com.example.group7fileflixserver.PasswordHashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of REGISTER (hash) and LOGIN (verify) at different BCrypt work factors
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    @Param({"4", "8", "10", "12"})
+    private int cost;
+
+    private String storedHash;
+
+    @Setup
+    public void setup() {
+        storedHash = PasswordHashing.hashPassword("correct-horse", cost);
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordHashing.hashPassword("correct-horse", cost);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return PasswordHashing.verifyPassword("correct-horse", storedHash);
+    }
+}
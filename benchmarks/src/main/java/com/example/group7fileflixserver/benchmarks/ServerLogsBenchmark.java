@@ -0,0 +1,44 @@
+package com.example.group7fileflixserver.benchmarks;
+
+import com.example.group7fileflixserver.ServerLogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Sustained logging throughput from several client threads. The block policy makes callers
+// wait for the flusher, so the score reflects what the disk can absorb rather than drops.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dfileflix.log.overflow=block")
+@Threads(4)
+public class ServerLogsBenchmark {
+
+    @Setup
+    public void setup() {
+        BenchmarkWorkspace.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ServerLogs.shutdown();
+    }
+
+    @Benchmark
+    public void log() {
+        ServerLogs.log("[127.0.0.1] Command: HEARTBEAT");
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.group7fileflixserver.benchmarks;
+
+import com.example.group7fileflixserver.ConnectionEngine;
+import com.example.group7fileflixserver.Database;
+import com.example.group7fileflixserver.EngineMode;
+import com.example.group7fileflixserver.FileServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// UPLOAD and RETRIEVE round trips over loopback against an embedded server, so the numbers
+// cover the ClientHandler copy loops, blob store and metadata writes together
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final String USER = "benchuser";
+
+    @Param({"4096", "1048576", "16777216"})
+    private int fileSize;
+
+    @Param({"VIRTUAL", "NIO"})
+    private EngineMode engineMode;
+
+    private ConnectionEngine engine;
+    private byte[] content;
+    private String downloadName;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        BenchmarkWorkspace.init();
+        engine = FileServer.startEmbedded(engineMode, 0);
+        content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+
+        downloadName = "download-" + fileSize + "-" + engineMode;
+        try (Client client = new Client(engine.getLocalPort())) {
+            client.upload(downloadName, content);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        engine.close();
+        Database.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        private Client client;
+
+        @Setup(Level.Trial)
+        public void connect(TransferBenchmark benchmark) throws IOException {
+            client = new Client(benchmark.engine.getLocalPort());
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public String upload(Connection connection) throws IOException {
+        return connection.client.upload("upload-" + counter.incrementAndGet(), content);
+    }
+
+    @Benchmark
+    public long download(Connection connection) throws IOException {
+        return connection.client.retrieve(downloadName);
+    }
+
+    // Minimal protocol client, same framing as the desktop client
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final byte[] sink = new byte[64 * 1024];
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        String upload(String filename, byte[] data) throws IOException {
+            out.writeUTF("UPLOAD");
+            out.writeUTF(USER);
+            out.writeUTF(filename);
+            out.writeLong(data.length);
+            out.write(data);
+            out.flush();
+            return in.readUTF();
+        }
+
+        long retrieve(String filename) throws IOException {
+            out.writeUTF("RETRIEVE");
+            out.writeUTF(USER);
+            out.writeUTF(filename);
+            out.flush();
+            if (!in.readBoolean()) {
+                throw new IOException("Retrieve refused: " + in.readUTF());
+            }
+            long remaining = in.readLong();
+            long total = remaining;
+            while (remaining > 0) {
+                int read = in.read(sink, 0, (int) Math.min(sink.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Connection closed mid-transfer");
+                }
+                remaining -= read;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeUTF("LOGOUT");
+            out.writeUTF(USER);
+            out.flush();
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.group7fileflixserver.loadgen;
+
+// The commands a simulated client mixes
+public enum Command {
+    LOGIN,
+    HEARTBEAT,
+    UPLOAD,
+    RETRIEVE
+}
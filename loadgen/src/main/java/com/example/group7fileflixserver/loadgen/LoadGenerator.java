@@ -0,0 +1,133 @@
+package com.example.group7fileflixserver.loadgen;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Drives a running server with simulated clients to size hardware and catch regressions in
+// the command paths. Every client is a virtual thread with its own connection, so thousands
+// fit in one process. The run prints client-side throughput and latency percentiles, then the
+// server's own STATS with the CPU time it used during the run.
+//
+// Before measuring, each account is registered and given one seed file per size class for
+// RETRIEVE to fetch. Clients run closed-loop: a client sends its next command once the
+// previous reply is in, after an optional think time.
+public class LoadGenerator {
+
+    private static final Pattern CPU_SECONDS = Pattern.compile("cpu_s=([0-9.]+)");
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.parse(args);
+        System.out.printf("Load run against %s:%d: %d clients over %d users, %ds warm-up, %ds measured%n",
+                settings.host(), settings.port(), settings.clients(), settings.users(),
+                settings.warmupSeconds(), settings.durationSeconds());
+
+        Map<Long, byte[]> payloads = new HashMap<>();
+        for (long size : settings.sizes().values()) {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("File size too large for the load generator: " + size);
+            }
+            byte[] payload = new byte[(int) size];
+            new Random(size).nextBytes(payload);
+            payloads.put(size, payload);
+        }
+
+        prepareUsers(settings, payloads);
+        String statsBefore = serverStats(settings);
+
+        LoadReport report = new LoadReport();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        long measureFrom = System.nanoTime() + settings.warmupSeconds() * 1_000_000_000L;
+        long deadline = measureFrom + settings.durationSeconds() * 1_000_000_000L;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.clients(); i++) {
+                clients.submit(new SimulatedClient(i, username(i % settings.users()), runId, settings,
+                        payloads, report, measureFrom, deadline));
+            }
+        }
+
+        System.out.println();
+        System.out.println("Client view:");
+        System.out.print(report.format(settings.durationSeconds()));
+
+        String statsAfter = serverStats(settings);
+        System.out.println();
+        System.out.println("Server STATS after the run:");
+        System.out.print(statsAfter);
+        double cpuBefore = cpuSeconds(statsBefore);
+        double cpuAfter = cpuSeconds(statsAfter);
+        if (cpuBefore >= 0 && cpuAfter >= 0) {
+            double cpu = cpuAfter - cpuBefore;
+            System.out.printf("Server CPU during the run: %.1f s (%.2f cores on average)%n",
+                    cpu, cpu / (settings.warmupSeconds() + settings.durationSeconds()));
+        }
+
+        double errorRate = report.commands() == 0 ? 1 : (double) report.errors() / report.commands();
+        if (errorRate > settings.maxErrorRate()) {
+            System.err.printf("Error rate %.4f is above maxErrorRate %.4f%n", errorRate, settings.maxErrorRate());
+            System.exit(1);
+        }
+    }
+
+    static String username(int index) {
+        return "loaduser" + index;
+    }
+
+    static String seedFilename(long size) {
+        return "loadgen-seed-" + size + ".bin";
+    }
+
+    // Register every account and upload its seed files; both are left in place between runs
+    private static void prepareUsers(LoadSettings settings, Map<Long, byte[]> payloads) throws Exception {
+        try (ExecutorService setup = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?>[] users = new Future<?>[settings.users()];
+            for (int i = 0; i < users.length; i++) {
+                String username = username(i);
+                users[i] = setup.submit(() -> {
+                    prepareUser(settings, username, payloads);
+                    return null;
+                });
+            }
+            for (Future<?> user : users) {
+                user.get();
+            }
+        }
+        System.out.printf("Prepared %d users with %d seed files each%n", settings.users(), payloads.size());
+    }
+
+    private static void prepareUser(LoadSettings settings, String username, Map<Long, byte[]> payloads) throws IOException {
+        try (ProtocolClient client = new ProtocolClient(settings.host(), settings.port(), settings.timeoutMs())) {
+            String registered = client.register(username, settings.password());
+            if (!"REGISTER_SUCCESS".equals(registered) && !"USERNAME_TAKEN".equals(registered)) {
+                throw new IOException("Could not register " + username + ": " + registered);
+            }
+            String token = client.login(username, settings.password());
+            if (token == null) {
+                throw new IOException("Could not log in as " + username + "; is the password different from an earlier run?");
+            }
+            for (Map.Entry<Long, byte[]> payload : payloads.entrySet()) {
+                String status = client.upload(token, seedFilename(payload.getKey()), payload.getValue(), 0);
+                if (!"UPLOAD_SUCCESS".equals(status) && !"DUPLICATE_FILE".equals(status)) {
+                    throw new IOException("Could not upload seed file for " + username + ": " + status);
+                }
+            }
+        }
+    }
+
+    private static String serverStats(LoadSettings settings) throws IOException {
+        try (ProtocolClient client = new ProtocolClient(settings.host(), settings.port(), settings.timeoutMs())) {
+            return client.stats();
+        }
+    }
+
+    private static double cpuSeconds(String stats) {
+        Matcher matcher = CPU_SECONDS.matcher(stats);
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.group7fileflixserver.loadgen;
+
+import com.example.group7fileflixserver.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Client-side latencies and throughput of a load run, laid out like the server's STATS table
+// so the two can be read side by side. Latency runs from sending a command to reading the last
+// byte of its reply.
+public class LoadReport {
+
+    private final Map<Command, LatencyHistogram> latencies = new EnumMap<>(Command.class);
+    private final Map<Command, LongAdder> errors = new EnumMap<>(Command.class);
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+
+    public LoadReport() {
+        for (Command command : Command.values()) {
+            latencies.put(command, new LatencyHistogram());
+            errors.put(command, new LongAdder());
+        }
+    }
+
+    public void record(Command command, long nanos, boolean failed) {
+        latencies.get(command).recordNanos(nanos);
+        if (failed) {
+            errors.get(command).increment();
+        }
+    }
+
+    public void uploaded(long bytes) {
+        bytesUploaded.add(bytes);
+    }
+
+    public void downloaded(long bytes) {
+        bytesDownloaded.add(bytes);
+    }
+
+    public void connectFailed() {
+        connectFailures.increment();
+    }
+
+    public long commands() {
+        long total = 0;
+        for (LatencyHistogram histogram : latencies.values()) {
+            total += histogram.count();
+        }
+        return total;
+    }
+
+    public long errors() {
+        long total = connectFailures.sum();
+        for (LongAdder count : errors.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public String format(double seconds) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "duration_s=%.1f commands=%d throughput=%.1f/s upload_mb_s=%.2f download_mb_s=%.2f connect_failures=%d%n",
+                seconds, commands(), commands() / seconds, bytesUploaded.sum() / seconds / (1 << 20),
+                bytesDownloaded.sum() / seconds / (1 << 20), connectFailures.sum()));
+        out.append(String.format(Locale.ROOT, "%-16s %9s %7s %9s %9s %9s %9s %9s%n",
+                "command", "count", "errors", "per_s", "p50_ms", "p99_ms", "p999_ms", "max_ms"));
+        for (Command command : Command.values()) {
+            LatencyHistogram histogram = latencies.get(command);
+            if (histogram.count() == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.ROOT, "%-16s %9d %7d %9.1f %9.3f %9.3f %9.3f %9.3f%n",
+                    command, histogram.count(), errors.get(command).sum(), histogram.count() / seconds,
+                    histogram.percentileMicros(0.5) / 1000.0, histogram.percentileMicros(0.99) / 1000.0,
+                    histogram.percentileMicros(0.999) / 1000.0, histogram.maxMicros() / 1000.0));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.group7fileflixserver.loadgen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+// Settings for a load run, given as key=value arguments or in a properties file (config=...).
+// Arguments override the file.
+//
+//   host, port              server to drive (localhost, 55000)
+//   clients                 simulated clients, each on its own connection (100)
+//   users                   accounts the clients share; registered if missing (10)
+//   password                password of those accounts (loadgen-password)
+//   durationSeconds         measured run time (60)
+//   warmupSeconds           run time before measuring starts (5)
+//   thinkMs                 pause between a client's commands (0: back to back)
+//   mix                     command weights (LOGIN:2,HEARTBEAT:38,UPLOAD:20,RETRIEVE:40)
+//   sizes                   file size weights, k/m/g suffixes allowed (4k:40,64k:30,1m:25,16m:5)
+//   uniqueUploads           make every upload distinct content, so none deduplicate (false)
+//   timeoutMs               socket read timeout (30000)
+//   maxErrorRate            exit with status 1 above this share of failed commands (0.01)
+public record LoadSettings(String host, int port, int clients, int users, String password,
+                           int durationSeconds, int warmupSeconds, int thinkMs,
+                           WeightedChoice<Command> mix, WeightedChoice<Long> sizes,
+                           boolean uniqueUploads, int timeoutMs, double maxErrorRate) {
+
+    public static LoadSettings parse(String[] args) throws IOException {
+        Properties properties = new Properties();
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            overrides.setProperty(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        String file = overrides.getProperty("config");
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(file))) {
+                properties.load(reader);
+            }
+        }
+        properties.putAll(overrides);
+
+        return new LoadSettings(
+                properties.getProperty("host", "localhost"),
+                intValue(properties, "port", 55000),
+                intValue(properties, "clients", 100),
+                intValue(properties, "users", 10),
+                properties.getProperty("password", "loadgen-password"),
+                intValue(properties, "durationSeconds", 60),
+                intValue(properties, "warmupSeconds", 5),
+                intValue(properties, "thinkMs", 0),
+                WeightedChoice.parse(properties.getProperty("mix", "LOGIN:2,HEARTBEAT:38,UPLOAD:20,RETRIEVE:40"),
+                        name -> Command.valueOf(name.toUpperCase(Locale.ROOT))),
+                WeightedChoice.parse(properties.getProperty("sizes", "4k:40,64k:30,1m:25,16m:5"),
+                        LoadSettings::parseSize),
+                Boolean.parseBoolean(properties.getProperty("uniqueUploads", "false")),
+                intValue(properties, "timeoutMs", 30000),
+                Double.parseDouble(properties.getProperty("maxErrorRate", "0.01")));
+    }
+
+    private static int intValue(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static long parseSize(String value) {
+        String size = value.trim().toLowerCase(Locale.ROOT);
+        int shift = switch (size.charAt(size.length() - 1)) {
+            case 'k' -> 10;
+            case 'm' -> 20;
+            case 'g' -> 30;
+            default -> 0;
+        };
+        if (shift > 0) {
+            size = size.substring(0, size.length() - 1);
+        }
+        return Long.parseLong(size) << shift;
+    }
+}
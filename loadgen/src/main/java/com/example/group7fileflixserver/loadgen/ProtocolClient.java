@@ -0,0 +1,110 @@
+package com.example.group7fileflixserver.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+// One connection to the server speaking its command protocol: a UTF command name followed by
+// the command's fields, answered with a UTF status or, for RETRIEVE, a found flag and the bytes.
+public class ProtocolClient implements Closeable {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+
+    public ProtocolClient(String host, int port, int timeoutMs) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMs);
+        socket.connect(new InetSocketAddress(host, port), timeoutMs);
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+        output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+    }
+
+    public String register(String username, String password) throws IOException {
+        output.writeUTF("REGISTER");
+        output.writeUTF(username);
+        output.writeUTF(password);
+        output.flush();
+        return input.readUTF();
+    }
+
+    // Returns a session token, or null if the login was refused
+    public String login(String username, String password) throws IOException {
+        output.writeUTF("LOGIN_SESSION");
+        output.writeUTF(username);
+        output.writeUTF(password);
+        output.flush();
+        String status = input.readUTF();
+        return "AUTH_SUCCESS".equals(status) ? input.readUTF() : null;
+    }
+
+    public String heartbeat() throws IOException {
+        output.writeUTF("HEARTBEAT");
+        output.flush();
+        return input.readUTF();
+    }
+
+    // Sends 'payload' under 'filename'. A non-zero 'tag' replaces the first eight bytes, so
+    // uploads of the same payload can still be distinct content.
+    public String upload(String principal, String filename, byte[] payload, long tag) throws IOException {
+        output.writeUTF("UPLOAD");
+        output.writeUTF(principal);
+        output.writeUTF(filename);
+        output.writeLong(payload.length);
+        int offset = 0;
+        if (tag != 0 && payload.length >= Long.BYTES) {
+            output.writeLong(tag);
+            offset = Long.BYTES;
+        }
+        output.write(payload, offset, payload.length - offset);
+        output.flush();
+        return input.readUTF();
+    }
+
+    // Downloads and discards a file; returns its length, or -1 if the server refused
+    public long retrieve(String principal, String filename) throws IOException {
+        output.writeUTF("RETRIEVE");
+        output.writeUTF(principal);
+        output.writeUTF(filename);
+        output.flush();
+        if (!input.readBoolean()) {
+            input.readUTF();
+            return -1;
+        }
+        long length = input.readLong();
+        long remaining = length;
+        while (remaining > 0) {
+            int bytesRead = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (bytesRead == -1) {
+                throw new EOFException("Download ended after " + (length - remaining) + " of " + length + " bytes");
+            }
+            remaining -= bytesRead;
+        }
+        return length;
+    }
+
+    public String stats() throws IOException {
+        output.writeUTF("STATS");
+        output.flush();
+        return input.readUTF();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to do with a connection that won't close cleanly
+        }
+    }
+}
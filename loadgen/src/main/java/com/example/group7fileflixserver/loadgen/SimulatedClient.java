@@ -0,0 +1,138 @@
+package com.example.group7fileflixserver.loadgen;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// One simulated user session: logs in on its own connection and issues commands from the mix
+// until the deadline, reconnecting after an error the way a real client would. Only commands
+// started after 'measureFrom' are recorded.
+public class SimulatedClient implements Runnable {
+
+    private final int id;
+    private final String username;
+    private final String runId;
+    private final LoadSettings settings;
+    private final Map<Long, byte[]> payloads;
+    private final LoadReport report;
+    private final long measureFrom;
+    private final long deadline;
+
+    private ProtocolClient connection;
+    private String token;
+    private int uploads;
+
+    public SimulatedClient(int id, String username, String runId, LoadSettings settings,
+                           Map<Long, byte[]> payloads, LoadReport report, long measureFrom, long deadline) {
+        this.id = id;
+        this.username = username;
+        this.runId = runId;
+        this.settings = settings;
+        this.payloads = payloads;
+        this.report = report;
+        this.measureFrom = measureFrom;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                if (connection == null && !connect()) {
+                    pause(1000);
+                    continue;
+                }
+                runCommand(settings.mix().next());
+                if (settings.thinkMs() > 0) {
+                    pause(ThreadLocalRandom.current().nextInt(settings.thinkMs() * 2 + 1));
+                }
+            }
+        } finally {
+            disconnect();
+        }
+    }
+
+    private boolean connect() {
+        long start = System.nanoTime();
+        try {
+            connection = new ProtocolClient(settings.host(), settings.port(), settings.timeoutMs());
+            token = connection.login(username, settings.password());
+            if (token == null) {
+                throw new IOException("Login refused for " + username);
+            }
+            return true;
+        } catch (IOException e) {
+            if (start >= measureFrom) {
+                report.connectFailed();
+            }
+            disconnect();
+            return false;
+        }
+    }
+
+    private void runCommand(Command command) {
+        long start = System.nanoTime();
+        boolean failed;
+        try {
+            failed = !execute(command, start >= measureFrom);
+        } catch (IOException e) {
+            failed = true;
+            disconnect();
+        }
+        if (start >= measureFrom) {
+            report.record(command, System.nanoTime() - start, failed);
+        }
+    }
+
+    // Returns false if the server answered with an error
+    private boolean execute(Command command, boolean measured) throws IOException {
+        switch (command) {
+            case LOGIN -> {
+                String newToken = connection.login(username, settings.password());
+                if (newToken == null) {
+                    // The server closes the connection after a failed login
+                    disconnect();
+                    return false;
+                }
+                token = newToken;
+                return true;
+            }
+            case HEARTBEAT -> {
+                return "HEARTBEAT_ACK".equals(connection.heartbeat());
+            }
+            case UPLOAD -> {
+                byte[] payload = payloads.get(settings.sizes().next());
+                String filename = "loadgen-" + runId + "-" + id + "-" + uploads++ + ".bin";
+                long tag = settings.uniqueUploads() ? ThreadLocalRandom.current().nextLong() | 1 : 0;
+                boolean stored = "UPLOAD_SUCCESS".equals(connection.upload(token, filename, payload, tag));
+                if (stored && measured) {
+                    report.uploaded(payload.length);
+                }
+                return stored;
+            }
+            case RETRIEVE -> {
+                long length = connection.retrieve(token, LoadGenerator.seedFilename(settings.sizes().next()));
+                if (length > 0 && measured) {
+                    report.downloaded(length);
+                }
+                return length > 0;
+            }
+            default -> throw new IllegalStateException("Unhandled command " + command);
+        }
+    }
+
+    private void disconnect() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
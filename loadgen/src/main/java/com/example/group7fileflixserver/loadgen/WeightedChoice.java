@@ -0,0 +1,61 @@
+package com.example.group7fileflixserver.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+// Picks values at random in proportion to their weights, parsed from "value:weight,value:weight"
+public class WeightedChoice<T> {
+
+    private final List<T> values;
+    private final long[] cumulativeWeights;
+
+    private WeightedChoice(List<T> values, long[] cumulativeWeights) {
+        this.values = values;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    public static <T> WeightedChoice<T> parse(String spec, Function<String, T> parser) {
+        List<T> values = new ArrayList<>();
+        List<Long> weights = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected value:weight, got " + entry);
+            }
+            long weight = Long.parseLong(entry.substring(colon + 1).trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in " + entry);
+            }
+            if (weight > 0) {
+                values.add(parser.apply(entry.substring(0, colon).trim()));
+                weights.add(weight);
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("No value with a positive weight in " + spec);
+        }
+        long[] cumulative = new long[weights.size()];
+        long total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += weights.get(i);
+            cumulative[i] = total;
+        }
+        return new WeightedChoice<>(List.copyOf(values), cumulative);
+    }
+
+    public T next() {
+        long pick = ThreadLocalRandom.current().nextLong(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return values.get(i);
+            }
+        }
+        return values.get(values.size() - 1);
+    }
+
+    public List<T> values() {
+        return values;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.group7fileflixserver;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Runs BCrypt work (LOGIN and REGISTER) on a small dedicated pool so a burst of logins
+// cannot occupy every core. When the queue is full the request is turned away as BUSY
+// instead of piling up behind the ones already waiting.
+public class AuthService {
+
+    private static final int THREADS = ServerConfig.getInt("auth.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_DEPTH = ServerConfig.getInt("auth.queue", 64);
+    private static final long TIMEOUT_MS = 30000;
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    public enum Result {
+        SUCCESS,
+        FAILED,
+        BUSY
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_DEPTH), Thread.ofPlatform().name("auth-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public static Result authenticate(String username, String password) {
+        return run(() -> Database.authenticateUser(username, password));
+    }
+
+    public static Result register(String username, String password) {
+        return run(() -> {
+            try {
+                return Database.registerUser(username, password);
+            } catch (SQLException e) {
+                return false;
+            }
+        });
+    }
+
+    public static int queuedRequests() {
+        return executor.getQueue().size();
+    }
+
+    private static Result run(Callable<Boolean> work) {
+        Future<Boolean> result;
+        try {
+            result = executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            ServerLogs.log("AUTH_BUSY: Authentication queue full (" + QUEUE_DEPTH + " waiting)");
+            return Result.BUSY;
+        }
+        try {
+            return result.get(TIMEOUT_MS, TimeUnit.MILLISECONDS) ? Result.SUCCESS : Result.FAILED;
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            return Result.BUSY;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            return Result.FAILED;
+        } catch (ExecutionException e) {
+            System.err.println("Authentication error: " + e.getCause());
+            return Result.FAILED;
+        }
+    }
+
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.group7fileflixserver;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.Checksum;
+import java.util.regex.Pattern;
+
+// Content-addressed storage for uploads. Each distinct content is stored once, under its
+// SHA-256, so identical uploads share a blob and two users can use the same filename without
+// overwriting each other. Uploads are staged and hashed locally, then handed to the
+// StorageBackend that keeps the blobs.
+public class BlobStore {
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final StorageBackend backend;
+    private final Path incomingDir;
+    private final Path quarantineDir;
+    private final FileContentCache contentCache;
+
+    public BlobStore(Path root, StorageBackend backend, FileContentCache contentCache) {
+        this.root = root;
+        this.backend = backend;
+        this.incomingDir = root.resolve(".incoming");
+        this.quarantineDir = root.resolve(".quarantine");
+        this.contentCache = contentCache;
+    }
+
+    public void initialize() throws IOException {
+        backend.initialize();
+        Files.createDirectories(incomingDir);
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    public StorageBackend backend() {
+        return backend;
+    }
+
+    public Path incomingDirectory() {
+        return incomingDir;
+    }
+
+    public Path quarantineDirectory() {
+        return quarantineDir;
+    }
+
+    // Move a damaged or unexpected file out of the store, keeping its path under .quarantine
+    // so it can be inspected or restored by hand. The modification time becomes the time it
+    // was quarantined, which the reconciler's retention counts from.
+    public Path quarantine(Path file) throws IOException {
+        Path target = quarantineDir.resolve(root.relativize(file));
+        Files.createDirectories(target.getParent());
+        for (int n = 1; Files.exists(target); n++) {
+            target = target.resolveSibling(file.getFileName() + "." + n);
+        }
+        Files.move(file, target);
+        touch(target, FileTime.fromMillis(System.currentTimeMillis()));
+        if (contentCache != null) {
+            contentCache.invalidate(file.getFileName().toString());
+        }
+        return target;
+    }
+
+    public static boolean isValidHash(String hash) {
+        return hash != null && HASH_PATTERN.matcher(hash).matches();
+    }
+
+    // The local file to serve a blob from; it does not exist if the blob isn't stored
+    public File fileFor(String hash) throws IOException {
+        return backend.localPath(hash).toFile();
+    }
+
+    public boolean contains(String hash) throws IOException {
+        return isValidHash(hash) && backend.contains(hash);
+    }
+
+    public IncomingBlob receive(InputStream in, long size) throws IOException {
+        return receive(in, size, null);
+    }
+
+    // Copy 'size' bytes from the client into a temporary file, hashing them on the way and
+    // updating 'checksum' too if one is given. A stream that ends early is an error, so a
+    // truncated upload is never committed.
+    public IncomingBlob receive(InputStream in, long size, Checksum checksum) throws IOException {
+        MessageDigest digest = newDigest();
+        Path temp = Files.createTempFile(incomingDir, "upload-", ".part");
+        long received = 0;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            byte[] buffer = new byte[FileTransfer.IO_BUFFER_BYTES];
+            while (received < size) {
+                int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, size - received));
+                if (bytesRead == -1) break;
+                digest.update(buffer, 0, bytesRead);
+                if (checksum != null) {
+                    checksum.update(buffer, 0, bytesRead);
+                }
+                out.write(buffer, 0, bytesRead);
+                received += bytesRead;
+            }
+            if (received < size) {
+                throw new EOFException("Upload ended after " + received + " of " + size + " bytes");
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new IncomingBlob(temp, HexFormat.of().formatHex(digest.digest()), received);
+    }
+
+    // Hash a file that was assembled elsewhere on the same disk so it can be committed
+    public IncomingBlob adopt(Path file) throws IOException {
+        return new IncomingBlob(file, hash(file), Files.size(file));
+    }
+
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Move a received upload into place. If the content is already stored the copy is discarded.
+    // Either way the blob's modification time is set to now: the reconciler leaves recent blobs
+    // alone, and the row for this upload isn't saved yet. A chunked upload's file would otherwise
+    // keep the time its last chunk was written.
+    public void commit(IncomingBlob blob) throws IOException {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        if (backend.contains(blob.hash())) {
+            discard(blob);
+            if (backend instanceof LocalStorageBackend local) {
+                touch(local.pathFor(blob.hash()), now);
+            }
+            return;
+        }
+        Files.setLastModifiedTime(blob.temp(), now);
+        backend.store(blob.hash(), blob.temp());
+        if (contentCache != null) {
+            contentCache.invalidate(blob.hash());
+        }
+    }
+
+    private static void touch(Path file, FileTime time) {
+        try {
+            Files.setLastModifiedTime(file, time);
+        } catch (IOException e) {
+            // Quarantined or deleted meanwhile; the reconciler reports it as missing
+        }
+    }
+
+    public void discard(IncomingBlob blob) {
+        try {
+            Files.deleteIfExists(blob.temp());
+        } catch (IOException e) {
+            System.err.println("Error deleting temporary upload: " + e.getMessage());
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // An upload that has been written to disk but not yet moved into the store
+    public record IncomingBlob(Path temp, String hash, long size) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.group7fileflixserver;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Accepts client connections and decides which threads run their ClientHandler
+public interface ConnectionEngine extends Closeable {
+
+    // Open the listening socket; port 0 picks a free port
+    void bind(int port) throws IOException;
+
+    int getLocalPort();
+
+    // Accept and serve connections until the engine is closed
+    void serve() throws IOException;
+
+    // Close the listening socket but keep serving the connections already accepted
+    void stopAccepting() throws IOException;
+}
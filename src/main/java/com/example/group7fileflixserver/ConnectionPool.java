@@ -0,0 +1,222 @@
+package com.example.group7fileflixserver;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Long-lived database connections: one writer (SQLite allows a single writer at a time anyway)
+// and a fixed set of readers, which WAL mode lets run alongside the writer. A connection that
+// sat idle for db.validateAfterSeconds, or failed its last use, is checked before it is used
+// again and reopened if the database dropped it, as a PostgreSQL server restart or an idle
+// timeout in between does.
+public class ConnectionPool implements AutoCloseable {
+
+    private static final long BORROW_TIMEOUT_MS = 30000;
+    private static final int VALIDATE_TIMEOUT_SECONDS = 5;
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(
+            ServerConfig.getInt("db.validateAfterSeconds", 30));
+
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final BlockingQueue<PooledConnection> readers;
+    private final int readerCount;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, SqlDialect dialect, int readerCount) throws SQLException {
+        this.readerCount = readerCount;
+        this.writer = new PooledConnection(url, dialect, true);
+
+        this.readers = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; i++) {
+            readers.add(new PooledConnection(url, dialect, false));
+        }
+    }
+
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        PooledConnection conn = borrowReader();
+        try {
+            return conn.run(work);
+        } finally {
+            readers.add(conn);
+        }
+    }
+
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        writerLock.lock();
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            return writer.run(work);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    // Run the work on the writer inside a single transaction, rolling back on failure
+    public <T> T transaction(SqlWork<T> work) throws SQLException {
+        return write(conn -> {
+            Connection connection = conn.connection();
+            connection.setAutoCommit(false);
+            try {
+                T result = work.run(conn);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    private PooledConnection borrowReader() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            PooledConnection conn = readers.poll(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (conn == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            return conn;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+    }
+
+    // Waits for borrowed readers to come back, then closes every statement and connection
+    @Override
+    public void close() {
+        closed = true;
+        List<PooledConnection> drained = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + BORROW_TIMEOUT_MS;
+        while (drained.size() < readerCount) {
+            long wait = deadline - System.currentTimeMillis();
+            PooledConnection conn = null;
+            try {
+                conn = wait > 0 ? readers.poll(wait, TimeUnit.MILLISECONDS) : null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (conn == null) {
+                System.err.println("Gave up waiting for " + (readerCount - drained.size()) + " database connections");
+                break;
+            }
+            drained.add(conn);
+        }
+        drained.forEach(PooledConnection::close);
+
+        writerLock.lock();
+        try {
+            writer.close();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(PooledConnection conn) throws SQLException;
+    }
+
+    // A connection plus the statements already prepared on it. Only the thread that
+    // borrowed the connection touches it, so the cache needs no locking.
+    public static class PooledConnection {
+        private final String url;
+        private final SqlDialect dialect;
+        private final boolean writer;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private Connection connection;
+        private long lastUsed = System.nanoTime();
+        private boolean suspect;
+
+        PooledConnection(String url, SqlDialect dialect, boolean writer) throws SQLException {
+            this.url = url;
+            this.dialect = dialect;
+            this.writer = writer;
+            this.connection = open();
+        }
+
+        private Connection open() throws SQLException {
+            Connection conn = DriverManager.getConnection(url);
+            try {
+                dialect.configure(conn, writer);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+            return conn;
+        }
+
+        private <T> T run(SqlWork<T> work) throws SQLException {
+            ensureOpen();
+            long started = System.nanoTime();
+            boolean failed = true;
+            try {
+                T result = work.run(this);
+                failed = false;
+                return result;
+            } finally {
+                lastUsed = System.nanoTime();
+                suspect = failed;
+                ServerMetrics.dbQuery(lastUsed - started);
+            }
+        }
+
+        private void ensureOpen() throws SQLException {
+            if (!connection.isClosed() && !suspect && System.nanoTime() - lastUsed < VALIDATE_AFTER_NANOS) {
+                return;
+            }
+            if (!connection.isClosed() && connection.isValid(VALIDATE_TIMEOUT_SECONDS)) {
+                suspect = false;
+                return;
+            }
+            System.err.println("Reopening dropped database connection");
+            close();
+            connection = open();
+            suspect = false;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null || stmt.isClosed()) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            }
+            stmt.clearParameters();
+            return stmt;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        private void close() {
+            for (PreparedStatement stmt : statements.values()) {
+                try {
+                    stmt.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing statement: " + e.getMessage());
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+}
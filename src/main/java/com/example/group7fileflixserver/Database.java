@@ -1,53 +1,97 @@
 package com.example.group7fileflixserver;
 
 import java.nio.file.Paths;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 // Database for the Fileflix application
 public class Database {
 
-    private static final String DB_PATH = Paths.get(System.getProperty("user.dir"), "fileflix.db").toString();
-    public static final String URL = "jdbc:sqlite:" + DB_PATH;
+    private static final String DB_PATH = ServerConfig.getString("db.path",
+            Paths.get(System.getProperty("user.dir"), "fileflix.db").toString());
+    // db.url points several server nodes at one shared PostgreSQL database instead of the local
+    // SQLite file, e.g. jdbc:postgresql://db:5432/fileflix?user=fileflix&password=...
+    public static final String URL = ServerConfig.getString("db.url", "jdbc:sqlite:" + DB_PATH);
+    private static final SqlDialect DIALECT = SqlDialect.fromUrl(URL);
+    private static final int READER_CONNECTIONS = ServerConfig.getInt("db.readers", 4);
+    private static final FileIndexCache fileIndex = new FileIndexCache(
+            ServerConfig.getInt("cache.users", 1024), ServerConfig.getInt("cache.filesPerUser", 10000));
+
+    private static ConnectionPool pool;
+    private static volatile boolean fullTextSearch;
+
+    // The pool is opened on first use and reopened if the server is restarted in-process
+    private static synchronized ConnectionPool pool() throws SQLException {
+        if (pool == null) {
+            pool = new ConnectionPool(URL, DIALECT, READER_CONNECTIONS);
+        }
+        return pool;
+    }
 
     public static void initialize() {
-        try (Connection conn = DriverManager.getConnection(URL)) {
-            String createUsersTable = "CREATE TABLE IF NOT EXISTS users (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "username TEXT UNIQUE NOT NULL, " +
-                    "password TEXT NOT NULL);";
-            conn.createStatement().execute(createUsersTable);
-
-            // Creating File tables
-            String createFilesTable = "CREATE TABLE IF NOT EXISTS files (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "username TEXT NOT NULL, " +
-                    "filename TEXT NOT NULL, " +
-                    "FOREIGN KEY(username) REFERENCES users(username));";
-            conn.createStatement().execute(createFilesTable);
-
-            // Check if 'size' column exists, and if not, add it
-            String checkColumnQuery = "PRAGMA table_info(files);";
-            ResultSet rs = conn.createStatement().executeQuery(checkColumnQuery);
-            boolean sizeColumnExists = false;
-
-            while (rs.next()) {
-                if (rs.getString("name").equals("size")) {
-                    sizeColumnExists = true;
-                    break;
-                }
-            }
+        try {
+            pool().write(conn -> {
+                try (Statement stmt = conn.connection().createStatement()) {
+                    String createUsersTable = "CREATE TABLE IF NOT EXISTS users (" +
+                            "id " + DIALECT.idColumn + ", " +
+                            "username TEXT UNIQUE NOT NULL, " +
+                            "password TEXT NOT NULL);";
+                    stmt.execute(createUsersTable);
 
-            // If the 'size' column doesn't exist, add it
-            if (!sizeColumnExists) {
-                String alterTableQuery = "ALTER TABLE files ADD COLUMN size INT NOT NULL DEFAULT 0;";
-                conn.createStatement().execute(alterTableQuery);
-                System.out.println("Added 'size' column to the 'files' table.");
-            }
+                    // Creating File tables
+                    String createFilesTable = "CREATE TABLE IF NOT EXISTS files (" +
+                            "id " + DIALECT.idColumn + ", " +
+                            "username TEXT NOT NULL, " +
+                            "filename TEXT NOT NULL, " +
+                            "FOREIGN KEY(username) REFERENCES users(username));";
+                    stmt.execute(createFilesTable);
+
+                    // If the 'size' column doesn't exist, add it
+                    if (!columnExists(stmt, "files", "size")) {
+                        String alterTableQuery = "ALTER TABLE files ADD COLUMN size " + DIALECT.integerType + " NOT NULL DEFAULT 0;";
+                        stmt.execute(alterTableQuery);
+                        System.out.println("Added 'size' column to the 'files' table.");
+                    }
+
+                    // Content-addressed blobs, shared by every files row with the same content
+                    String createBlobsTable = "CREATE TABLE IF NOT EXISTS blobs (" +
+                            "hash TEXT PRIMARY KEY, " +
+                            "size " + DIALECT.integerType + " NOT NULL, " +
+                            "ref_count " + DIALECT.integerType + " NOT NULL DEFAULT 0);";
+                    stmt.execute(createBlobsTable);
+
+                    // Rows without a blob_hash predate the blob store and point at UPLOAD_DIR/filename
+                    if (!columnExists(stmt, "files", "blob_hash")) {
+                        stmt.execute("ALTER TABLE files ADD COLUMN blob_hash TEXT REFERENCES blobs(hash);");
+                        System.out.println("Added 'blob_hash' column to the 'files' table.");
+                    }
+
+                    // Every UPLOAD and RETRIEVE looks files up by owner and name
+                    createFilenameIndex(stmt);
+
+                    // Existing rows keep 0, which LIST reports as an unknown upload time
+                    if (!columnExists(stmt, "files", "uploaded_at")) {
+                        stmt.execute("ALTER TABLE files ADD COLUMN uploaded_at " + DIALECT.integerType + " NOT NULL DEFAULT 0;");
+                        System.out.println("Added 'uploaded_at' column to the 'files' table.");
+                    }
+
+                    // LIST pages are read in (sort column, id) order for each user
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_files_username_size ON files(username, size, id);");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_files_username_uploaded ON files(username, uploaded_at, id);");
+
+                    fullTextSearch = DIALECT == SqlDialect.SQLITE && createSearchIndex(stmt);
+                }
+                return null;
+            });
 
             System.out.println("Database initialized successfully.");
         } catch (SQLException e) {
@@ -55,10 +99,60 @@ public class Database {
         }
     }
 
+    // A user's filenames are unique, so two racing uploads of one name can't both be saved.
+    // Databases from before the index was unique may hold such duplicates; they keep a plain
+    // index until the duplicates are cleaned up by hand.
+    private static void createFilenameIndex(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM files GROUP BY username, filename HAVING COUNT(*) > 1 LIMIT 1;")) {
+            if (rs.next()) {
+                System.err.println("Duplicate filenames in the files table; filename index left non-unique");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_files_username_filename ON files(username, filename);");
+                return;
+            }
+        }
+        stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_files_username_filename_unique ON files(username, filename);");
+        stmt.execute("DROP INDEX IF EXISTS idx_files_username_filename;");
+    }
+
+    // Substring search over filenames uses an FTS5 trigram index kept in sync by triggers.
+    // Falls back to LIKE scans if this SQLite build has no FTS5 or trigram tokenizer.
+    private static boolean createSearchIndex(Statement stmt) {
+        try {
+            boolean existed;
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'files_fts';")) {
+                existed = rs.next();
+            }
+            stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS files_fts USING fts5(" +
+                    "filename, content='files', content_rowid='id', tokenize='trigram');");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS files_fts_insert AFTER INSERT ON files BEGIN " +
+                    "INSERT INTO files_fts(rowid, filename) VALUES (new.id, new.filename); END;");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS files_fts_delete AFTER DELETE ON files BEGIN " +
+                    "INSERT INTO files_fts(files_fts, rowid, filename) VALUES ('delete', old.id, old.filename); END;");
+            if (!existed) {
+                stmt.execute("INSERT INTO files_fts(files_fts) VALUES ('rebuild');");
+                System.out.println("Built the filename search index.");
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Filename search index unavailable, using LIKE: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean columnExists(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.getConnection().getMetaData().getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+
     public static void clearFilesTable() {
-        try (Connection conn = DriverManager.getConnection(URL)) {
-            String deleteAll = "DELETE FROM files;";
-            conn.createStatement().executeUpdate(deleteAll);
+        try {
+            pool().transaction(conn -> {
+                conn.prepare("DELETE FROM files;").executeUpdate();
+                // Blobs stay on disk but are no longer referenced by any file
+                return conn.prepare("UPDATE blobs SET ref_count = 0;").executeUpdate();
+            });
+            fileIndex.clear();
             System.out.println("Files table cleared.");
         } catch (SQLException e) {
             e.printStackTrace();
@@ -69,11 +163,13 @@ public class Database {
         // Hash the password using BCrypt
         String hashedPassword = PasswordHashing.hashPassword(password);
 
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement stmt = conn.prepareStatement("INSERT INTO users (username, password) VALUES (?, ?)")) {
-            stmt.setString(1, username);
-            stmt.setString(2, hashedPassword);  // Store the hashed password
-            stmt.executeUpdate();
+        try {
+            pool().write(conn -> {
+                PreparedStatement stmt = conn.prepare("INSERT INTO users (username, password) VALUES (?, ?)");
+                stmt.setString(1, username);
+                stmt.setString(2, hashedPassword);  // Store the hashed password
+                return stmt.executeUpdate();
+            });
             System.out.println("New user registered: " + username);
             ServerLogs.log("USER_REGISTERED: " + username + " registered successfully.");
             return true;
@@ -84,62 +180,354 @@ public class Database {
         }
     }
 
-    // Authenticating user
-    public static boolean authenticateUser(String username, String password) {
-        try (Connection conn = DriverManager.getConnection(URL)) {
-            String query = "SELECT password FROM users WHERE username = ?;";
-            PreparedStatement stmt = conn.prepareStatement(query);
+    public static boolean isUsernameTaken(String username) throws SQLException {
+        return pool().read(conn -> {
+            PreparedStatement stmt = conn.prepare("SELECT COUNT(*) FROM users WHERE username = ?");
             stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                String storedHash = rs.getString("password");
-                return PasswordHashing.verifyPassword(password, storedHash);  // Verify with BCrypt
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
             }
-            return false;
+        });
+    }
+
+    // Authenticating user
+    public static boolean authenticateUser(String username, String password) {
+        try {
+            String storedHash = pool().read(conn -> {
+                PreparedStatement stmt = conn.prepare("SELECT password FROM users WHERE username = ?;");
+                stmt.setString(1, username);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getString("password") : null;
+                }
+            });
+            // Verify with BCrypt outside the pool so slow hashing doesn't hold a connection
+            return storedHash != null && PasswordHashing.verifyPassword(password, storedHash);
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public static void saveFile(String username, String filename, long fileSize) {
-        try (Connection conn = DriverManager.getConnection(URL)) {
-            String query = "INSERT INTO files (username,filename,size) VALUES (?, ?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+    // Returns false if the row could not be written
+    public static boolean saveFile(String username, String filename, long fileSize, String blobHash) {
+        try {
+            pool().transaction(conn -> {
+                PreparedStatement blob = conn.prepare("INSERT INTO blobs (hash, size, ref_count) VALUES (?, ?, 1) " +
+                        "ON CONFLICT(hash) DO UPDATE SET ref_count = blobs.ref_count + 1");
+                blob.setString(1, blobHash);
+                blob.setLong(2, fileSize);
+                blob.executeUpdate();
+
+                PreparedStatement stmt = conn.prepare("INSERT INTO files (username,filename,size,blob_hash,uploaded_at) VALUES (?, ?, ?, ?, ?)");
                 stmt.setString(1, username);
                 stmt.setString(2, filename); // owner
                 stmt.setLong(3, fileSize);
-                stmt.executeUpdate();
-                System.out.println("File record saved in DB for user: " + username);
-                ServerLogs.log("FILE_SAVED: User '" + username + "' uploaded file '" + filename + "' (" + fileSize + " bytes).");
-            }
+                stmt.setString(4, blobHash);
+                stmt.setLong(5, System.currentTimeMillis());
+                return stmt.executeUpdate();
+            });
+            fileIndex.added(username, new FileRecord(filename, fileSize, blobHash));
+            System.out.println("File record saved in DB for user: " + username);
+            ServerLogs.log("FILE_SAVED: User '" + username + "' uploaded file '" + filename + "' (" + fileSize + " bytes).");
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             ServerLogs.log("DB_ERROR: Error saving file record for user '" + username + "'. Error: " + e.getMessage());
+            return false;
         }
     }
 
+    // Save many files in one transaction, so a batch upload costs one commit instead of one per file
+    public static boolean saveFiles(String username, List<FileRecord> files) {
+        if (files.isEmpty()) {
+            return true;
+        }
+        try {
+            pool().transaction(conn -> {
+                PreparedStatement blob = conn.prepare("INSERT INTO blobs (hash, size, ref_count) VALUES (?, ?, 1) " +
+                        "ON CONFLICT(hash) DO UPDATE SET ref_count = blobs.ref_count + 1");
+                PreparedStatement stmt = conn.prepare("INSERT INTO files (username,filename,size,blob_hash,uploaded_at) VALUES (?, ?, ?, ?, ?)");
+                long now = System.currentTimeMillis();
+                for (FileRecord file : files) {
+                    blob.setString(1, file.blobHash());
+                    blob.setLong(2, file.size());
+                    blob.executeUpdate();
+
+                    stmt.setString(1, username);
+                    stmt.setString(2, file.filename());
+                    stmt.setLong(3, file.size());
+                    stmt.setString(4, file.blobHash());
+                    stmt.setLong(5, now);
+                    stmt.executeUpdate();
+                }
+                return files.size();
+            });
+            for (FileRecord file : files) {
+                fileIndex.added(username, file);
+            }
+            System.out.println("File records saved in DB for user: " + username + " (" + files.size() + " files)");
+            ServerLogs.log("FILES_SAVED: User '" + username + "' uploaded " + files.size() + " files in one batch.");
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            ServerLogs.log("DB_ERROR: Error saving batch of " + files.size() + " files for user '" + username + "'. Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The user's file record, or null if the user has no file with that name
+    public static FileRecord findFile(String username, String filename) {
+        try {
+            return lookupFile(username, filename);
+        } catch (SQLException e) {
+            System.err.println("Database error looking up file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Size of a stored blob, or -1 if the hash is unknown
+    public static long findBlobSize(String blobHash) {
+        try {
+            return lookupBlobSize(blobHash);
+        } catch (SQLException e) {
+            System.err.println("Database error looking up blob: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // As findBlobSize, for callers that must not mistake a database error for an unknown blob
+    public static long lookupBlobSize(String blobHash) throws SQLException {
+        return pool().read(conn -> {
+            PreparedStatement stmt = conn.prepare("SELECT size FROM blobs WHERE hash = ?");
+            stmt.setString(1, blobHash);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1L;
+            }
+        });
+    }
+
+    // Size of every blob the database knows about, for the storage reconciler
+    public static Map<String, Long> blobSizes() throws SQLException {
+        return pool().read(conn -> {
+            Map<String, Long> sizes = new HashMap<>();
+            try (ResultSet rs = conn.prepare("SELECT hash, size FROM blobs").executeQuery()) {
+                while (rs.next()) {
+                    sizes.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+            return sizes;
+        });
+    }
+
+    // Blobs that at least one file points at
+    public static Set<String> referencedBlobs() throws SQLException {
+        return pool().read(conn -> {
+            Set<String> hashes = new HashSet<>();
+            try (ResultSet rs = conn.prepare("SELECT DISTINCT blob_hash FROM files WHERE blob_hash IS NOT NULL").executeQuery()) {
+                while (rs.next()) {
+                    hashes.add(rs.getString(1));
+                }
+            }
+            return hashes;
+        });
+    }
+
+    // Files stored before the blob store, which live in the upload directory under their name
+    public static Set<String> legacyFilenames() throws SQLException {
+        return pool().read(conn -> {
+            Set<String> names = new HashSet<>();
+            try (ResultSet rs = conn.prepare("SELECT DISTINCT filename FROM files WHERE blob_hash IS NULL").executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+            return names;
+        });
+    }
+
+    // Recount blob references from the files table, e.g. after a crash between writes; returns
+    // the number of blobs whose count was wrong
+    public static int repairBlobRefCounts() throws SQLException {
+        return pool().write(conn -> conn.prepare(
+                "UPDATE blobs SET ref_count = (SELECT COUNT(*) FROM files WHERE files.blob_hash = blobs.hash) " +
+                "WHERE ref_count != (SELECT COUNT(*) FROM files WHERE files.blob_hash = blobs.hash)").executeUpdate());
+    }
+
+    // Total size of a user's files, for quota checks. Shared content still counts for each owner.
+    public static long storageUsed(String username) throws SQLException {
+        return pool().read(conn -> {
+            PreparedStatement stmt = conn.prepare("SELECT COALESCE(SUM(size), 0) FROM files WHERE username = ?");
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
     // Check if a file already exists for the user
     public static boolean fileExistsForUser(String username, String filename) {
-        String query = "SELECT COUNT(*) FROM files WHERE username = ? AND filename = ?";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, username);
-            stmt.setString(2, filename);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() && rs.getInt(1) > 0;
+        try {
+            return lookupFile(username, filename) != null;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    // Ownership check for RETRIEVE
+    public static boolean fileBelongsToUser(String username, String filename) {
+        try {
+            return lookupFile(username, filename) != null;
+        } catch (SQLException e) {
+            System.err.println("Database error checking file ownership: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static FileRecord lookupFile(String username, String filename) throws SQLException {
+        // Other nodes sharing the database don't update this node's cache, so it isn't used
+        if (!DIALECT.shared) {
+            Map<String, FileRecord> files = fileIndex.get(username);
+            if (files == null) {
+                files = loadUserFiles(username);
+            }
+            if (files != null) {
+                return files.get(filename);
+            }
+        }
+
+        // Too many files to cache this user, or a shared database; query the single row
+        return pool().read(conn -> {
+            PreparedStatement stmt = conn.prepare("SELECT size, blob_hash FROM files WHERE username = ? AND filename = ? LIMIT 1");
+            stmt.setString(1, username);
+            stmt.setString(2, filename);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new FileRecord(filename, rs.getLong("size"), rs.getString("blob_hash")) : null;
+            }
+        });
+    }
+
+    // Load every file of a user into the cache; null if the user has too many files to cache
+    private static Map<String, FileRecord> loadUserFiles(String username) throws SQLException {
+        long generation = fileIndex.generation();
+        int limit = fileIndex.maxFilesPerUser();
+        Map<String, FileRecord> files = pool().read(conn -> {
+            PreparedStatement stmt = conn.prepare("SELECT filename, size, blob_hash FROM files WHERE username = ? ORDER BY id LIMIT ?");
+            stmt.setString(1, username);
+            stmt.setInt(2, limit + 1);
+            Map<String, FileRecord> loaded = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String filename = rs.getString("filename");
+                    loaded.putIfAbsent(filename, new FileRecord(filename, rs.getLong("size"), rs.getString("blob_hash")));
+                }
+            }
+            return loaded;
+        });
+        if (files.size() > limit) {
+            return null;
+        }
+        fileIndex.put(username, files, generation);
+        return files;
+    }
+
+    // One page of a user's files in keyset order. prefix and contains are optional filters
+    // (null to skip); cursor is the value of FileListing.cursor for the last row of the previous
+    // page, or null for the first page. Returns up to limit + 1 rows so the caller can tell
+    // whether there is another page.
+    public static List<FileListing> listFiles(String username, String prefix, String contains,
+                                              FileListing.Sort sort, boolean descending, String cursor, int limit) throws SQLException {
+        String direction = descending ? "DESC" : "ASC";
+        StringBuilder sql = new StringBuilder("SELECT id, filename, size, uploaded_at FROM files WHERE username = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(username);
+
+        if (prefix != null && !prefix.isEmpty()) {
+            // A range over the (username, filename) index rather than LIKE, which can't use it
+            sql.append(" AND filename >= ?");
+            params.add(prefix);
+            String upperBound = prefixUpperBound(prefix);
+            if (upperBound != null) {
+                sql.append(" AND filename < ?");
+                params.add(upperBound);
+            }
+        }
+        if (contains != null && !contains.isEmpty()) {
+            // The trigram tokenizer only matches terms of three or more characters
+            if (fullTextSearch && contains.length() >= 3) {
+                sql.append(" AND id IN (SELECT rowid FROM files_fts WHERE files_fts MATCH ?)");
+                params.add("\"" + contains.replace("\"", "\"\"") + "\"");
+            } else {
+                sql.append(" AND filename ").append(DIALECT.likeOperator).append(" ? ESCAPE '\\'");
+                params.add("%" + contains.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+            }
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            int split = cursor.indexOf(':');
+            if (split < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            String value = cursor.substring(split + 1);
+            sql.append(" AND (").append(sort.column).append(", id) ").append(descending ? "<" : ">").append(" (?, ?)");
+            params.add(sort == FileListing.Sort.NAME ? value : (Object) Long.parseLong(value));
+            params.add(Long.parseLong(cursor.substring(0, split)));
+        }
+        sql.append(" ORDER BY ").append(sort.column).append(' ').append(direction)
+                .append(", id ").append(direction).append(" LIMIT ?");
+        params.add(limit + 1);
+
+        return pool().read(conn -> {
+            PreparedStatement stmt = conn.prepare(sql.toString());
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            List<FileListing> page = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new FileListing(rs.getLong("id"), rs.getString("filename"),
+                            rs.getLong("size"), rs.getLong("uploaded_at")));
+                }
+            }
+            return page;
+        });
+    }
+
+    // The least string above every string starting with the prefix, in code point order (which
+    // is SQLite's binary UTF-8 order): the prefix with its last code point incremented. Appending
+    // Character.MAX_VALUE instead sorts below names continuing with a supplementary character.
+    // Null when every code point is already the maximum and there is no bound.
+    static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            end -= Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+                return new StringBuilder(prefix.substring(0, end)).appendCodePoint(next).toString();
+            }
+        }
+        return null;
+    }
+
     public static void close() {
         try {
+            synchronized (Database.class) {
+                if (pool != null) {
+                    if (DIALECT == SqlDialect.SQLITE) {
+                        // Fold the WAL into the database file so nothing is left to replay on startup
+                        pool.write(conn -> {
+                            try (Statement stmt = conn.connection().createStatement()) {
+                                return stmt.execute("PRAGMA wal_checkpoint(TRUNCATE);");
+                            }
+                        });
+                    }
+                    pool.close();
+                    pool = null;
+                }
+            }
             System.out.println("Database resources released");
         } catch (Exception e) {
             System.err.println("Error closing database resources: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
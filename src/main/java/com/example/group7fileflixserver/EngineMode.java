@@ -0,0 +1,34 @@
+package com.example.group7fileflixserver;
+
+import java.util.Locale;
+
+// The connection engines the server can run with (-Dfileflix.engine=platform|virtual|nio)
+public enum EngineMode {
+    PLATFORM,
+    VIRTUAL,
+    NIO;
+
+    public static EngineMode fromProperty(String value) {
+        if (value == null || value.isBlank()) {
+            return VIRTUAL;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown engine '" + value + "', using " + VIRTUAL);
+            return VIRTUAL;
+        }
+    }
+
+    public ConnectionEngine create() {
+        switch (this) {
+            case PLATFORM:
+                return new ThreadedConnectionEngine(Thread.ofPlatform().name("client-", 0).factory());
+            case NIO:
+                return new SelectorConnectionEngine(Runtime.getRuntime().availableProcessors() * 2);
+            case VIRTUAL:
+            default:
+                return new ThreadedConnectionEngine(Thread.ofVirtual().name("client-", 0).factory());
+        }
+    }
+}
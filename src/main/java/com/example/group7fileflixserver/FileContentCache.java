@@ -0,0 +1,104 @@
+package com.example.group7fileflixserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps the contents of frequently downloaded files in off-heap buffers, so popular files
+// are served from memory without a disk read or a heap allocation per RETRIEVE. A file is
+// only admitted on its second request within the tracking window, so one-off downloads
+// can't flush the hot set; eviction is least-recently-used within the byte budget.
+public class FileContentCache {
+
+    private static final int ADMISSION_HITS = 2;
+    private static final int MAX_TRACKED = 10000;
+
+    private final long budgetBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> requestCounts = new HashMap<>();
+    private long usedBytes;
+
+    public FileContentCache(long budgetBytes, long maxEntryBytes) {
+        this.budgetBytes = budgetBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, Integer.MAX_VALUE);
+    }
+
+    // A read-only view of the file's bytes, or null if it should be read from disk this time
+    public ByteBuffer get(String key, File file) throws IOException {
+        if (budgetBytes <= 0) {
+            return null;
+        }
+        synchronized (this) {
+            ByteBuffer cached = entries.get(key);
+            if (cached != null) {
+                return cached.duplicate();
+            }
+            long size = file.length();
+            if (size == 0 || size > maxEntryBytes || size > budgetBytes || !admit(key)) {
+                return null;
+            }
+        }
+
+        ByteBuffer loaded = load(file);
+        synchronized (this) {
+            ByteBuffer existing = entries.get(key);
+            if (existing != null) {
+                return existing.duplicate();
+            }
+            evictFor(loaded.capacity());
+            entries.put(key, loaded);
+            usedBytes += loaded.capacity();
+            return loaded.duplicate();
+        }
+    }
+
+    // Drop a cached file, e.g. when the bytes behind the key have been replaced
+    public synchronized void invalidate(String key) {
+        ByteBuffer removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.capacity();
+        }
+        requestCounts.remove(key);
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private boolean admit(String key) {
+        if (requestCounts.size() >= MAX_TRACKED) {
+            // Start a new window so the counts follow what is popular now
+            requestCounts.clear();
+        }
+        int count = requestCounts.merge(key, 1, Integer::sum);
+        return count >= ADMISSION_HITS;
+    }
+
+    private void evictFor(long bytes) {
+        Iterator<Map.Entry<String, ByteBuffer>> eldest = entries.entrySet().iterator();
+        while (usedBytes + bytes > budgetBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().getValue().capacity();
+            eldest.remove();
+        }
+    }
+
+    private static ByteBuffer load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+}
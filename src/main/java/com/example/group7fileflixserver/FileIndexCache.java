@@ -0,0 +1,72 @@
+package com.example.group7fileflixserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Write-through cache of user -> filename -> FileRecord for the ownership and duplicate checks.
+// Whole users are cached and evicted least-recently-used first; users with more files than
+// maxFilesPerUser are never cached and always go to the database.
+public class FileIndexCache {
+
+    private final int maxFilesPerUser;
+    private final Map<String, Map<String, FileRecord>> users;
+    // Bumped after every write so a load that raced with a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public FileIndexCache(int maxUsers, int maxFilesPerUser) {
+        this.maxFilesPerUser = maxFilesPerUser;
+        this.users = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, FileRecord>> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    public int maxFilesPerUser() {
+        return maxFilesPerUser;
+    }
+
+    // The cached files of a user, or null if the user is not cached
+    public synchronized Map<String, FileRecord> get(String username) {
+        return users.get(username);
+    }
+
+    // Read before loading a user from the database and pass to put()
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(String username, Map<String, FileRecord> files, long loadedAt) {
+        if (files.size() > maxFilesPerUser) {
+            return;
+        }
+        Map<String, FileRecord> index = new ConcurrentHashMap<>(files);
+        synchronized (this) {
+            if (generation.get() == loadedAt) {
+                users.put(username, index);
+            }
+        }
+    }
+
+    // Call after the row has been committed
+    public synchronized void added(String username, FileRecord record) {
+        generation.incrementAndGet();
+        Map<String, FileRecord> index = users.get(username);
+        if (index == null) {
+            return;
+        }
+        if (index.size() >= maxFilesPerUser) {
+            users.remove(username);
+        } else {
+            index.putIfAbsent(record.filename(), record);
+        }
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        users.clear();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.group7fileflixserver;
+
+import java.util.Locale;
+
+// One row of a LIST or SEARCH page. uploadedAt is epoch milliseconds, or 0 for files
+// uploaded before the column existed.
+public record FileListing(long id, String filename, long size, long uploadedAt) {
+
+    public enum Sort {
+        NAME("filename"), SIZE("size"), UPLOADED("uploaded_at");
+
+        final String column;
+
+        Sort(String column) {
+            this.column = column;
+        }
+
+        // null for an unknown sort name
+        public static Sort parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    // The keyset cursor that continues a listing after this row: the row id, then the sort value
+    public String cursor(Sort sort) {
+        return switch (sort) {
+            case NAME -> id + ":" + filename;
+            case SIZE -> id + ":" + size;
+            case UPLOADED -> id + ":" + uploadedAt;
+        };
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.group7fileflixserver;
+
+// A row of the files table. blobHash is null for files uploaded before content-addressed
+// storage, which still live directly in the upload directory under their filename.
+public record FileRecord(String filename, long size, String blobHash) {
+}
@@ -1,64 +1,152 @@
 package com.example.group7fileflixserver;
 
 import java.io.*;
-import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
-import java.sql.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 public class FileServer {
-    private static final int PORT = 55000;
-    private static final String UPLOAD_DIR = "server_uploads/";
-    private static final String URL = Database.URL;
-    private static final long CLIENT_TIMEOUT = 120000;
-    private static final long SERVER_SHUTDOWN_TIMEOUT = 120000;
+    private static final int PORT = ServerConfig.getInt("port", 55000);
+    private static final String UPLOAD_DIR = ServerConfig.getString("upload.dir", "server_uploads/");
+    private static final FileContentCache contentCache = new FileContentCache(
+            ServerConfig.getLong("cache.contentBytes", 256L * 1024 * 1024), ServerConfig.getLong("cache.maxFileBytes", 16L * 1024 * 1024));
+    private static final BlobStore blobStore = new BlobStore(Paths.get(UPLOAD_DIR),
+            StorageBackend.create(Paths.get(UPLOAD_DIR)), contentCache);
+    private static final StorageReconciler reconciler = new StorageReconciler(blobStore);
+    private static final UploadSessionManager uploadSessions = new UploadSessionManager(Paths.get(UPLOAD_DIR, ".partial"));
+    static final long CLIENT_TIMEOUT = ServerConfig.getLong("client.timeoutMs", 120000);
+    private static final int MAX_LIST_PAGE = ServerConfig.getInt("list.maxPage", 500);
+    private static final int MAX_BATCH_FILES = ServerConfig.getInt("batch.maxFiles", 10000);
+    // An idle server with no connections exits on its own unless idle.exitEnabled is false
+    private static final boolean IDLE_EXIT_ENABLED = ServerConfig.getBoolean("idle.exitEnabled", true);
+    private static final long SERVER_SHUTDOWN_TIMEOUT = ServerConfig.getLong("idle.timeoutMs", 120000);
+    private static final long IDLE_CHECK_INTERVAL = ServerConfig.getLong("idle.checkIntervalMs", 60000);
+    // When set, file commands must present a session token (or come from a connection that logged in)
+    private static final boolean REQUIRE_TOKEN = ServerConfig.getBoolean("auth.requireToken", false);
     private static final Set<Socket> activeConnections = Collections.synchronizedSet(new HashSet<>());
     private static final AtomicLong lastActivityTime = new AtomicLong(System.currentTimeMillis());
+    // Connections that have started serving, so a drain can tell idle ones from busy ones
+    private static final Set<ClientHandler> openHandlers = ConcurrentHashMap.newKeySet();
+    private static final long DRAIN_TIMEOUT = ServerConfig.getLong("drain.timeoutMs", 30000);
+    private static volatile boolean draining;
+    private static volatile ConnectionEngine runningEngine;
 
     public static void main(String[] args) {
         initializeServer();
     }
 
     private static void initializeServer() {
-        File uploadDir = new File(UPLOAD_DIR);
-        if (!uploadDir.exists() && !uploadDir.mkdirs()) {
-            System.err.println("Failed to create upload directory");
+        if (!prepareStorage()) {
             return;
         }
-
-        Database.initialize();
         setupShutdownHook();
         startShutdownMonitor();
+        startMetricsEndpoint();
+        if (ServerConfig.getBoolean("reconcile.enabled", true)) {
+            reconciler.start();
+        }
 
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("Server started on port " + PORT);
+        EngineMode mode = EngineMode.fromProperty(ServerConfig.get("engine"));
+        try (ConnectionEngine engine = mode.create()) {
+            engine.bind(PORT);
+            runningEngine = engine;
+            System.out.println("Server started on port " + PORT + " (" + mode + " engine)");
             System.out.println("Waiting for connections...");
+            engine.serve();
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+        }
+    }
 
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                String clientIP = clientSocket.getInetAddress().getHostAddress();
-
-                activeConnections.add(clientSocket);
-                lastActivityTime.set(System.currentTimeMillis());
+    private static boolean prepareStorage() {
+        File uploadDir = new File(UPLOAD_DIR);
+        if (!uploadDir.exists() && !uploadDir.mkdirs()) {
+            System.err.println("Failed to create upload directory");
+            return false;
+        }
+        try {
+            blobStore.initialize();
+            uploadSessions.start();
+        } catch (IOException e) {
+            System.err.println("Failed to prepare upload storage: " + e.getMessage());
+            return false;
+        }
 
-                System.out.printf("[%s] New connection established\n", clientIP);
-                System.out.println("Active connections: " + activeConnections.size());
+        Database.initialize();
+        return true;
+    }
 
-                new ClientHandler(clientSocket).start();
+    // Start a server inside this JVM without the shutdown hook or idle monitor, for benchmarks
+    // and load tests. Close the returned engine to stop accepting connections.
+    public static ConnectionEngine startEmbedded(EngineMode mode, int port) throws IOException {
+        if (!prepareStorage()) {
+            throw new IOException("Could not prepare storage in " + UPLOAD_DIR);
+        }
+        ConnectionEngine engine = mode.create();
+        engine.bind(port);
+        Thread acceptor = new Thread(() -> {
+            try {
+                engine.serve();
+            } catch (IOException e) {
+                System.err.println("Server error: " + e.getMessage());
             }
+        }, "embedded-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return engine;
+    }
+
+    private static void startMetricsEndpoint() {
+        int metricsPort = ServerConfig.getInt("metrics.port", -1);
+        if (metricsPort < 0) {
+            return;
+        }
+        try {
+            MetricsEndpoint.start(metricsPort);
         } catch (IOException e) {
-            System.err.println("Server error: " + e.getMessage());
+            System.err.println("Could not start metrics endpoint: " + e.getMessage());
+        }
+    }
+
+    // Called by the connection engines for every accepted socket
+    static void connectionOpened(Socket clientSocket) {
+        String clientIP = clientSocket.getInetAddress().getHostAddress();
+
+        try {
+            ServerConfig.configure(clientSocket);
+        } catch (SocketException e) {
+            System.err.printf("[%s] Could not set socket options: %s\n", clientIP, e.getMessage());
         }
+        activeConnections.add(clientSocket);
+        lastActivityTime.set(System.currentTimeMillis());
+        ServerMetrics.connectionOpened();
+
+        System.out.printf("[%s] New connection established\n", clientIP);
+        System.out.println("Active connections: " + activeConnections.size());
     }
 
     private static void setupShutdownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\nInitiating graceful shutdown...");
             ServerLogs.log("Initiating graceful shutdown...");
+            drain();
             synchronized (activeConnections) {
                 System.out.println("Closing " + activeConnections.size() + " active connections");
                 ServerLogs.log("Closing " + activeConnections.size() + " active connections");
@@ -74,16 +162,75 @@ public class FileServer {
                 });
                 activeConnections.clear();
             }
+            uploadSessions.stop();
+            reconciler.stop();
+            AuthService.shutdown();
+            MetricsEndpoint.stop();
             Database.close();
+            ServerLogs.shutdown();
             System.out.println("Server shutdown complete");
         }));
     }
 
+    // Stop taking new work and give running commands until the drain deadline to finish, so a
+    // restart doesn't cut off transfers in progress. Idle connections are closed straight away and
+    // busy ones as soon as their command completes; commands that arrive meanwhile get
+    // SERVER_DRAINING. For a zero-downtime upgrade, start the new server on the same port with
+    // socket.reusePort=true on both, then stop the old one: it stops accepting and drains while
+    // the new one takes the new connections.
+    static void drain() {
+        draining = true;
+        ConnectionEngine engine = runningEngine;
+        if (engine != null) {
+            try {
+                engine.stopAccepting();
+            } catch (IOException e) {
+                System.err.println("Error closing listening socket: " + e.getMessage());
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        int busy = closeIdleHandlers();
+        if (busy > 0) {
+            System.out.println("Draining: waiting for " + busy + " connections to finish their commands");
+            ServerLogs.log("Draining: waiting for " + busy + " connections");
+        }
+        while (busy > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            busy = closeIdleHandlers();
+        }
+        if (busy > 0) {
+            System.out.println("Drain deadline passed with " + busy + " connections still busy");
+            ServerLogs.log("Drain deadline passed with " + busy + " connections still busy");
+        }
+    }
+
+    // Close every connection between commands; returns how many are still running one
+    private static int closeIdleHandlers() {
+        int busy = 0;
+        for (ClientHandler handler : openHandlers) {
+            if (handler.commandsRunning.get() > 0) {
+                busy++;
+            } else {
+                handler.closeConnection();
+            }
+        }
+        return busy;
+    }
+
     private static void startShutdownMonitor() {
+        if (!IDLE_EXIT_ENABLED) {
+            return;
+        }
         new Thread(() -> {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    Thread.sleep(60000); // Check every minute
+                    Thread.sleep(IDLE_CHECK_INTERVAL);
                     long inactiveDuration = System.currentTimeMillis() - lastActivityTime.get();
                     if (inactiveDuration > SERVER_SHUTDOWN_TIMEOUT && activeConnections.isEmpty()) {
                         System.out.println("Server inactive - initiating shutdown");
@@ -98,58 +245,124 @@ public class FileServer {
         }).start();
     }
 
-    private static class ClientHandler extends Thread {
+    // Serves the command protocol for one client. The threaded engines call run() on a
+    // dedicated thread; the selector engine calls serveNextCommand() whenever input is ready.
+    // After HELLO, each multiplexed stream gets its own child handler sharing the connection's login.
+    static class ClientHandler implements Runnable {
         private final Socket socket;
         private DataInputStream input;
         private DataOutputStream output;
         private final String clientIP;
+        private final ClientHandler connection;
+        private final boolean streamHandler;
+        private volatile String loggedInUser;
+        private volatile boolean logoutRequested;
+        // Set by dispatch for a command it doesn't know, so metrics count it as UNKNOWN
+        private boolean unknownCommand;
+        // Commands running on this connection, including those of its multiplexed streams
+        private final AtomicInteger commandsRunning = new AtomicInteger();
+        // Per-connection rate limits; stream handlers use their connection's
+        private final TokenBucket uploadBucket = new TokenBucket(0);
+        private final TokenBucket downloadBucket = new TokenBucket(0);
 
         public ClientHandler(Socket socket) {
             this.socket = socket;
             this.clientIP = socket.getInetAddress().getHostAddress();
+            this.connection = this;
+            this.streamHandler = false;
+        }
+
+        private ClientHandler(ClientHandler connection, InputStream in, OutputStream out) {
+            this.socket = connection.socket;
+            this.clientIP = connection.clientIP;
+            this.connection = connection;
+            this.streamHandler = true;
+            this.input = new DataInputStream(in);
+            this.output = new DataOutputStream(out);
+        }
+
+        ClientHandler forStream(InputStream in, OutputStream out) {
+            return new ClientHandler(this, in, out);
+        }
+
+        boolean logoutRequested() {
+            return logoutRequested;
+        }
+
+        // Where file bytes can be written directly, skipping 'output'; never for multiplexed streams
+        private WritableByteChannel directChannel() {
+            return streamHandler ? null : socket.getChannel();
         }
 
         @Override
         public void run() {
+            if (!start()) {
+                return;
+            }
+            while (serveNextCommand()) {
+                // keep serving until logout, timeout or error
+            }
+        }
+
+        // Set up the streams; returns false if the connection could not be used
+        boolean start() {
             try {
                 socket.setSoTimeout((int) CLIENT_TIMEOUT);
                 input = new DataInputStream(socket.getInputStream());
                 output = new DataOutputStream(socket.getOutputStream());
+                openHandlers.add(this);
 
                 System.out.printf("[%s] Client handler started\n", clientIP);
                 ServerLogs.log("Client connected from: " + clientIP);
+                return true;
+            } catch (IOException e) {
+                System.err.printf("[%s] Connection error: %s\n", clientIP, e.getMessage());
+                ServerLogs.log("Connection error from " + clientIP + ": " + e.getClass().getSimpleName());
+                closeConnection();
+                return false;
+            }
+        }
 
-                while (!socket.isClosed()) {
-                    String command = input.readUTF();
-                    lastActivityTime.set(System.currentTimeMillis());
-
-                    System.out.printf("[%s] Received command: %s\n", clientIP, command);
-                    ServerLogs.log(String.format("[%s] Command: %s", clientIP, command));
-
-                    switch (command) {
-                        case "REGISTER":
-                            handleRegister();
-                            break;
-                        case "LOGIN":
-                            handleLogin();
-                            break;
-                        case "UPLOAD":
-                            handleFileUpload();
-                            break;
-                        case "RETRIEVE":
-                            handleClientRequest();
-                            break;
-                        case "LOGOUT":
-                            handleLogout();
-                            return; // Exit the loop after logout
-                        case "HEARTBEAT":
-                            handleHeartbeat();
-                            break;
-                        default:
-                            System.out.printf("[%s] Unknown command: %s\n", clientIP, command);
-                            output.writeUTF("UNKNOWN_COMMAND");
-                            output.flush();
+        // Read and handle a single command; returns false once the connection is closed
+        boolean serveNextCommand() {
+            try {
+                if (socket.isClosed()) {
+                    return false;
+                }
+                String command = input.readUTF();
+                lastActivityTime.set(System.currentTimeMillis());
+
+                System.out.printf("[%s] Received command: %s\n", clientIP, command);
+                ServerLogs.log(String.format("[%s] Command: %s", clientIP, command));
+
+                // Counted before checking for a drain, so the drain either sees this command
+                // running or this command sees the drain
+                connection.commandsRunning.incrementAndGet();
+                try {
+                    if (draining) {
+                        output.writeUTF("SERVER_DRAINING");
+                        output.flush();
+                        connection.closeConnection();
+                        return false;
                     }
+                    ServerMetrics.commandStarted();
+                    long started = System.nanoTime();
+                    boolean failed = true;
+                    unknownCommand = false;
+                    try {
+                        boolean keepOpen = dispatch(command);
+                        failed = false;
+                        if (draining) {
+                            closeConnection();
+                            return false;
+                        }
+                        return keepOpen;
+                    } finally {
+                        ServerMetrics.commandFinished(unknownCommand ? ServerMetrics.UNKNOWN_COMMAND : command,
+                                System.nanoTime() - started, failed);
+                    }
+                } finally {
+                    connection.commandsRunning.decrementAndGet();
                 }
             } catch (SocketTimeoutException e) {
                 System.out.printf("[%s] Client idle timeout\n", clientIP);
@@ -160,13 +373,128 @@ public class FileServer {
             } catch (SQLException e) {
                 System.err.printf("[%s] Database error: %s\n", clientIP, e.getMessage());
                 ServerLogs.log("Database error for client " + clientIP);
-            } finally {
-                closeConnection();
+            } catch (RuntimeException e) {
+                // A handler bug must not kill the serving thread with the socket still open
+                System.err.printf("[%s] Internal error: %s\n", clientIP, e);
+                ServerLogs.log("Internal error for client " + clientIP + ": " + e);
+            }
+            closeConnection();
+            return false;
+        }
+
+        // Run one command; returns false if the connection should be closed afterwards
+        private boolean dispatch(String command) throws IOException, SQLException {
+            switch (command) {
+                case "REGISTER":
+                    handleRegister();
+                    break;
+                case "LOGIN":
+                    handleLogin(false);
+                    break;
+                case "LOGIN_SESSION":
+                    handleLogin(true);
+                    break;
+                case "UPLOAD":
+                    handleFileUpload(false, false);
+                    break;
+                case "UPLOAD_Z":
+                    handleFileUpload(true, false);
+                    break;
+                case "UPLOAD_VERIFIED":
+                    handleFileUpload(false, true);
+                    break;
+                case "UPLOAD_BY_HASH":
+                    handleUploadByHash();
+                    break;
+                case "UPLOAD_INIT":
+                    handleUploadInit();
+                    break;
+                case "UPLOAD_CHUNK":
+                    handleUploadChunk();
+                    break;
+                case "UPLOAD_STATUS":
+                    handleUploadStatus();
+                    break;
+                case "UPLOAD_COMPLETE":
+                    handleUploadComplete();
+                    break;
+                case "RETRIEVE":
+                    handleClientRequest(false, false);
+                    break;
+                case "RETRIEVE_Z":
+                    handleClientRequest(true, false);
+                    break;
+                case "RETRIEVE_VERIFIED":
+                    handleClientRequest(false, true);
+                    break;
+                case "RETRIEVE_RANGE":
+                    handleRangeRequest();
+                    break;
+                case "UPLOAD_BATCH":
+                    handleBatchUpload();
+                    break;
+                case "RETRIEVE_BATCH":
+                    handleBatchRetrieve();
+                    break;
+                case "LOGOUT":
+                    handleLogout();
+                    closeConnection();
+                    return false;
+                case "HELLO":
+                    return handleHello();
+                case "LIST":
+                    handleList(false);
+                    break;
+                case "SEARCH":
+                    handleList(true);
+                    break;
+                case "STATS":
+                    handleStats();
+                    break;
+                case "HEARTBEAT":
+                    handleHeartbeat();
+                    break;
+                default:
+                    unknownCommand = true;
+                    System.out.printf("[%s] Unknown command: %s\n", clientIP, command);
+                    output.writeUTF("UNKNOWN_COMMAND");
+                    output.flush();
             }
+            return !socket.isClosed();
+        }
+
+        // Protocol negotiation: a client that wants request multiplexing sends HELLO and the
+        // highest version it speaks. Clients that never send HELLO keep the original protocol.
+        private boolean handleHello() throws IOException {
+            int version = Math.min(input.readInt(), MultiplexedSession.VERSION);
+            if (streamHandler || version < 2) {
+                output.writeUTF("HELLO");
+                output.writeInt(1);
+                output.flush();
+                return true;
+            }
+            output.writeUTF("HELLO");
+            output.writeInt(version);
+            output.flush();
+            System.out.printf("[%s] Switched to multiplexed protocol v%d\n", clientIP, version);
+            ServerLogs.log(String.format("[%s] Multiplexed session started", clientIP));
+
+            // The session reads frames on a virtual thread of its own, so it doesn't hold on to
+            // an NIO worker. It isn't a command itself; a drain waits only for its streams' commands.
+            MultiplexedSession session = new MultiplexedSession(this, socket, socket.getInputStream(),
+                    socket.getOutputStream(), version);
+            Thread.ofVirtual().name("session-" + clientIP).start(session::run);
+            return false;
         }
 
         private void handleLogout() throws IOException {
+            logoutRequested = true;
             String username = input.readUTF();
+            if (SessionManager.isToken(username)) {
+                String owner = SessionManager.resolve(username);
+                SessionManager.revoke(username);
+                username = owner;
+            }
             output.writeUTF("LOGOUT_SUCCESS");
             output.flush();
 
@@ -174,19 +502,79 @@ public class FileServer {
             ServerLogs.log(String.format("User %s logged out from %s", username, clientIP));
         }
 
+        // LIST: sort (name, size or uploaded), descending flag, cursor ("" for the first page) and page size.
+        // SEARCH adds a mode (prefix or contains) and the query before those. The reply is true, then
+        // per file true, filename, size and upload time, then false and the cursor for the next page
+        // ("" when there are no more files).
+        private void handleList(boolean search) throws IOException, SQLException {
+            String username = authorize(input.readUTF());
+            String mode = search ? input.readUTF() : null;
+            String query = search ? input.readUTF() : null;
+            FileListing.Sort sort = FileListing.Sort.parse(input.readUTF());
+            boolean descending = input.readBoolean();
+            String cursor = input.readUTF();
+            int limit = Math.min(input.readInt(), MAX_LIST_PAGE);
+
+            if (username == null) {
+                output.writeBoolean(false);
+                output.writeUTF("AUTH_REQUIRED");
+                return;
+            }
+            if (sort == null || limit <= 0 || (search && !"prefix".equals(mode) && !"contains".equals(mode))) {
+                output.writeBoolean(false);
+                output.writeUTF("INVALID_REQUEST");
+                return;
+            }
+
+            List<FileListing> page;
+            try {
+                page = Database.listFiles(username, "prefix".equals(mode) ? query : null,
+                        "contains".equals(mode) ? query : null, sort, descending, cursor, limit);
+            } catch (IllegalArgumentException e) {
+                output.writeBoolean(false);
+                output.writeUTF("INVALID_REQUEST");
+                return;
+            }
+
+            output.writeBoolean(true);
+            int rows = Math.min(page.size(), limit);
+            for (int i = 0; i < rows; i++) {
+                FileListing file = page.get(i);
+                output.writeBoolean(true);
+                output.writeUTF(file.filename());
+                output.writeLong(file.size());
+                output.writeLong(file.uploadedAt());
+            }
+            output.writeBoolean(false);
+            output.writeUTF(page.size() > limit ? page.get(limit - 1).cursor(sort) : "");
+            output.flush();
+            System.out.printf("[%s] %s: %d files for %s\n", clientIP, search ? "Search" : "List", rows, username);
+        }
+
+        private void handleStats() throws IOException {
+            output.writeUTF(ServerMetrics.report());
+            output.flush();
+        }
+
         private void handleHeartbeat() throws IOException {
             output.writeUTF("HEARTBEAT_ACK");
             output.flush();
             System.out.printf("[%s] Heartbeat acknowledged\n", clientIP);
         }
 
-        private void closeConnection() {
+        void closeConnection() {
+            if (streamHandler) {
+                // The multiplexed session owns the socket
+                return;
+            }
             try {
                 if (socket != null && !socket.isClosed()) {
                     System.out.printf("[%s] Closing connection\n", clientIP);
                     ServerLogs.log("[Closing connection\n"+ clientIP);
                     socket.close();
                     activeConnections.remove(socket);
+                    openHandlers.remove(this);
+                    ServerMetrics.connectionClosed();
                     System.out.printf("[%s] Connection closed. Active connections: %d\n",
                             clientIP, activeConnections.size());
                     ServerLogs.log("Client disconnected: " + clientIP);
@@ -214,18 +602,30 @@ public class FileServer {
                 return;
             }
 
+            // Commands treat a principal with the token prefix as a session token, so such an
+            // account could never be used by name
+            if (SessionManager.isToken(username)) {
+                output.writeUTF("REGISTER_FAILED");
+                System.out.printf("[%s] Registration failed - reserved username prefix: %s\n", clientIP, username);
+                return;
+            }
+
+            AuthService.Result result;
             try {
-                if (isUsernameTaken(username)) {
+                if (Database.isUsernameTaken(username)) {
                     output.writeUTF("USERNAME_TAKEN");
                     System.out.printf("[%s] Registration failed - username taken: %s\n",
                             clientIP, username);
                     ServerLogs.log(String.format("[%s] Username taken: %s", clientIP, username));
-                } else if (Database.registerUser(username, password)) {
+                } else if ((result = AuthService.register(username, password)) == AuthService.Result.SUCCESS) {
                     output.writeUTF("REGISTER_SUCCESS");
                     System.out.printf("[%s] Registration successful: %s\n",
                             clientIP, username);
                     ServerLogs.log(String.format("[%s] New user registered: %s",
                             clientIP, username));
+                } else if (result == AuthService.Result.BUSY) {
+                    output.writeUTF("SERVER_BUSY");
+                    System.out.printf("[%s] Registration deferred - auth queue full: %s\n", clientIP, username);
                 } else {
                     output.writeUTF("REGISTER_FAILED");
                     System.out.printf("[%s] Registration failed (database error): %s\n",
@@ -242,24 +642,24 @@ public class FileServer {
             }
         }
 
-        private boolean isUsernameTaken(String username) throws SQLException {
-            try (Connection conn = DriverManager.getConnection(URL);
-                 PreparedStatement stmt = conn.prepareStatement(
-                         "SELECT COUNT(*) FROM users WHERE username = ?")) {
-                stmt.setString(1, username);
-                ResultSet rs = stmt.executeQuery();
-                return rs.next() && rs.getInt(1) > 0;
-            }
-        }
-
-        private void handleLogin() throws IOException, SQLException {
+        // LOGIN_SESSION answers AUTH_SUCCESS followed by a session token for later commands
+        private void handleLogin(boolean issueToken) throws IOException {
             String username = input.readUTF();
             String password = input.readUTF();
 
-            if (Database.authenticateUser(username, password)) {
+            AuthService.Result result = AuthService.authenticate(username, password);
+            if (result == AuthService.Result.SUCCESS) {
+                connection.loggedInUser = username;
                 output.writeUTF("AUTH_SUCCESS");
+                if (issueToken) {
+                    output.writeUTF(SessionManager.issue(username));
+                }
+                output.flush();
                 System.out.printf("[%s] Login successful: %s\n", clientIP, username);
                 ServerLogs.log(String.format("[%s] User logged in: %s", clientIP, username));
+            } else if (result == AuthService.Result.BUSY) {
+                output.writeUTF("SERVER_BUSY");
+                System.out.printf("[%s] Login deferred - auth queue full: %s\n", clientIP, username);
             } else {
                 output.writeUTF("AUTH_FAILED");
                 System.out.printf("[%s] Login failed: %s\n", clientIP, username);
@@ -268,36 +668,471 @@ public class FileServer {
             }
         }
 
-        private void handleFileUpload() throws IOException {
-            String username = input.readUTF();
+        // Resolve the user a file command acts for: a session token, or a bare username from
+        // older clients. Returns null if the caller is not allowed to act as anyone.
+        private String authorize(String principal) {
+            if (SessionManager.isToken(principal)) {
+                String username = SessionManager.resolve(principal);
+                if (username == null) {
+                    System.out.printf("[%s] Unknown or expired session token\n", clientIP);
+                    ServerLogs.log(String.format("[%s] Rejected expired session token", clientIP));
+                }
+                return username;
+            }
+            if (REQUIRE_TOKEN && !principal.equals(connection.loggedInUser)) {
+                System.out.printf("[%s] Session token required for %s\n", clientIP, principal);
+                return null;
+            }
+            return principal;
+        }
+
+        // UPLOAD_Z adds a codec after the size; a deflate body arrives as length-prefixed chunks
+        // UPLOAD_VERIFIED adds the client's digest of the content after the size (see UploadDigest)
+        private void handleFileUpload(boolean compressed, boolean verified) throws IOException {
+            String username = authorize(input.readUTF());
             String filename = input.readUTF();
             long fileSize = input.readLong();
+            String codec = compressed ? input.readUTF() : TransferCompression.IDENTITY;
+            UploadDigest expected = verified ? UploadDigest.parse(input.readUTF()) : null;
+
+            if (!TransferCompression.isSupported(codec)) {
+                // The body can't be skipped without knowing its framing
+                output.writeUTF("UPLOAD_FAILED");
+                System.out.printf("[%s] Unsupported upload codec: %s\n", clientIP, codec);
+                closeConnection();
+                return;
+            }
+            if (fileSize < 0) {
+                // Nor can a body whose declared size is negative
+                output.writeUTF("UPLOAD_FAILED");
+                System.out.printf("[%s] Upload with negative size rejected: %s\n", clientIP, filename);
+                closeConnection();
+                return;
+            }
+            TransferCompression.ChunkedInputStream chunks = TransferCompression.DEFLATE.equals(codec)
+                    ? new TransferCompression.ChunkedInputStream(input) : null;
+
+            if (username == null) {
+                output.writeUTF("AUTH_REQUIRED");
+                skipUploadBody(fileSize, chunks);
+                return;
+            }
+
+            if (verified && expected == null) {
+                output.writeUTF("INVALID_DIGEST");
+                System.out.printf("[%s] Upload with an invalid digest rejected: %s\n", clientIP, filename);
+                skipUploadBody(fileSize, chunks);
+                return;
+            }
 
             if (Database.fileExistsForUser(username, filename)) {
                 output.writeUTF("DUPLICATE_FILE");
                 System.out.printf("[%s] Duplicate file rejected: %s by %s\n", clientIP, filename, username);
                 ServerLogs.log(String.format("[%s] Duplicate file: %s by %s", clientIP, filename, username));
-                drainInput(fileSize);
+                skipUploadBody(fileSize, chunks);
+                return;
+            }
+
+            if (exceedsQuota(username, fileSize)) {
+                rejectOverQuota(username, filename);
+                skipUploadBody(fileSize, chunks);
                 return;
             }
 
-            File uploadedFile = new File(UPLOAD_DIR, filename);
-            try (FileOutputStream fos = new FileOutputStream(uploadedFile)) {
-                long remaining = fileSize;
-                byte[] buffer = new byte[4096];
-                while (remaining > 0) {
-                    int bytesRead = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
-                    if (bytesRead == -1) break;
-                    fos.write(buffer, 0, bytesRead);
-                    remaining -= bytesRead;
+            BlobStore.IncomingBlob blob = null;
+            Inflater inflater = chunks != null ? new Inflater() : null;
+            try {
+                // Throttle the bytes as they arrive on the wire, before inflating
+                Throttle throttle = UserLimits.uploads(username, connection.uploadBucket, fileSize);
+                InputStream body = chunks != null
+                        ? new InflaterInputStream(throttle.wrap(chunks), inflater, 64 * 1024) : throttle.wrap(input);
+                Checksum checksum = expected != null ? expected.newChecksum() : null;
+                blob = blobStore.receive(body, fileSize, checksum);
+                if (chunks != null) {
+                    chunks.skipToEnd();
                 }
+                ServerMetrics.bytesReceived(chunks != null ? chunks.bytesRead() : blob.size());
 
-                Database.saveFile(username, filename, fileSize);
+                if (expected != null && !expected.matches(blob, checksum)) {
+                    blobStore.discard(blob);
+                    output.writeUTF("CHECKSUM_MISMATCH");
+                    System.out.printf("[%s] Corrupted upload rejected: %s by %s (expected %s)\n",
+                            clientIP, filename, username, expected);
+                    ServerLogs.log(String.format("[%s] Checksum mismatch: %s by %s", clientIP, filename, username));
+                    return;
+                }
+                blobStore.commit(blob);
+
+                if (!Database.saveFile(username, filename, blob.size(), blob.hash())) {
+                    reportUnsaved(username, filename);
+                    return;
+                }
                 output.writeUTF("UPLOAD_SUCCESS");
                 System.out.printf("[%s] File uploaded: %s by %s (%d bytes)\n",
-                        clientIP, filename, username, fileSize);
+                        clientIP, filename, username, blob.size());
                 ServerLogs.log(String.format("[%s] File uploaded: %s by %s", clientIP, filename, username));
+            } catch (EOFException e) {
+                // The client went away or sent less than it declared; nothing was stored, but the
+                // body may have arrived whole before the chunk trailer didn't
+                if (blob != null) {
+                    blobStore.discard(blob);
+                }
+                output.writeUTF("UPLOAD_FAILED");
+                System.err.printf("[%s] Truncated upload rejected: %s (%s)\n", clientIP, filename, e.getMessage());
+                ServerLogs.log(String.format("[%s] Truncated upload: %s", clientIP, filename));
+                closeConnection();
+            } catch (IOException e) {
+                if (blob != null) {
+                    blobStore.discard(blob);
+                }
+                output.writeUTF("UPLOAD_FAILED");
+                System.err.printf("[%s] Upload failed: %s\n", clientIP, e.getMessage());
+                ServerLogs.log(String.format("[%s] Upload failed: %s", clientIP, e.getMessage()));
+            } finally {
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+        }
+
+        // The content is stored but its row couldn't be written; the reconciler quarantines the
+        // unreferenced blob later and deletes it once reconcile.quarantineDays have passed
+        private void reportUnsaved(String username, String filename) throws IOException {
+            output.writeUTF("UPLOAD_FAILED");
+            System.err.printf("[%s] Could not record upload: %s by %s\n", clientIP, filename, username);
+            ServerLogs.log(String.format("[%s] Upload not recorded: %s by %s", clientIP, filename, username));
+        }
+
+        // Whether storing 'bytes' more would take the user past their quota
+        private boolean exceedsQuota(String username, long bytes) {
+            long quota = UserLimits.quotaBytes(username);
+            return quota > 0 && storageUsed(username) + bytes > quota;
+        }
+
+        private long storageUsed(String username) {
+            try {
+                return Database.storageUsed(username);
+            } catch (SQLException e) {
+                // Let the upload through; saving it will report the database problem
+                e.printStackTrace();
+                return 0;
+            }
+        }
+
+        private void rejectOverQuota(String username, String filename) throws IOException {
+            output.writeUTF("QUOTA_EXCEEDED");
+            System.out.printf("[%s] Quota exceeded: %s by %s\n", clientIP, filename, username);
+            ServerLogs.log(String.format("[%s] Quota exceeded: %s by %s", clientIP, filename, username));
+        }
+
+        private void skipUploadBody(long fileSize, TransferCompression.ChunkedInputStream chunks) throws IOException {
+            if (chunks != null) {
+                chunks.skipToEnd();
+            } else {
+                drainInput(fileSize);
+            }
+        }
+
+        // Batch upload: a manifest (int count, then filename and size per file) followed by the
+        // file bodies back-to-back. All rows are committed in one transaction, then the reply is
+        // BATCH_RESULT, the count and one status per file in manifest order.
+        private void handleBatchUpload() throws IOException {
+            String username = authorize(input.readUTF());
+            int count = input.readInt();
+            if (count < 0 || count > MAX_BATCH_FILES) {
+                // Without a valid manifest the bodies can't be skipped
+                output.writeUTF("INVALID_BATCH");
+                System.out.printf("[%s] Invalid batch size: %d\n", clientIP, count);
+                closeConnection();
+                return;
+            }
+            String[] filenames = new String[count];
+            long[] sizes = new long[count];
+            for (int i = 0; i < count; i++) {
+                filenames[i] = input.readUTF();
+                sizes[i] = input.readLong();
+                if (sizes[i] < 0) {
+                    // A negative size would lower the quota total and can't be skipped either
+                    output.writeUTF("INVALID_BATCH");
+                    System.out.printf("[%s] Invalid batch file size: %d for %s\n", clientIP, sizes[i], filenames[i]);
+                    closeConnection();
+                    return;
+                }
+            }
+
+            if (username == null) {
+                for (long size : sizes) {
+                    drainInput(size);
+                }
+                output.writeUTF("AUTH_REQUIRED");
+                return;
+            }
+
+            String[] statuses = new String[count];
+            List<FileRecord> saved = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            long quota = UserLimits.quotaBytes(username);
+            long used = quota > 0 ? storageUsed(username) : 0;
+            for (int i = 0; i < count; i++) {
+                if (!seen.add(filenames[i]) || Database.fileExistsForUser(username, filenames[i])) {
+                    statuses[i] = "DUPLICATE_FILE";
+                    drainInput(sizes[i]);
+                    continue;
+                }
+                if (quota > 0 && used + sizes[i] > quota) {
+                    statuses[i] = "QUOTA_EXCEEDED";
+                    drainInput(sizes[i]);
+                    continue;
+                }
+                used += sizes[i];
+                BlobStore.IncomingBlob blob = null;
+                try {
+                    Throttle throttle = UserLimits.uploads(username, connection.uploadBucket, sizes[i]);
+                    blob = blobStore.receive(throttle.wrap(input), sizes[i]);
+                    ServerMetrics.bytesReceived(blob.size());
+                    blobStore.commit(blob);
+                } catch (IOException e) {
+                    // The rest of the stream can't be trusted, so give up on the whole batch;
+                    // files already received stay unreferenced and nothing is saved
+                    if (blob != null) {
+                        blobStore.discard(blob);
+                    }
+                    output.writeUTF("UPLOAD_FAILED");
+                    System.err.printf("[%s] Batch upload failed at %s: %s\n", clientIP, filenames[i], e.getMessage());
+                    ServerLogs.log(String.format("[%s] Batch upload failed: %s", clientIP, e.getMessage()));
+                    closeConnection();
+                    return;
+                }
+                saved.add(new FileRecord(filenames[i], blob.size(), blob.hash()));
+                statuses[i] = "UPLOAD_SUCCESS";
+            }
+
+            if (!Database.saveFiles(username, saved)) {
+                for (int i = 0; i < count; i++) {
+                    if ("UPLOAD_SUCCESS".equals(statuses[i])) {
+                        statuses[i] = "UPLOAD_FAILED";
+                    }
+                }
+            }
+
+            output.writeUTF("BATCH_RESULT");
+            output.writeInt(count);
+            for (String status : statuses) {
+                output.writeUTF(status);
+            }
+            output.flush();
+            System.out.printf("[%s] Batch uploaded: %d of %d files by %s\n", clientIP, saved.size(), count, username);
+            ServerLogs.log(String.format("[%s] Batch upload: %d of %d files by %s", clientIP, saved.size(), count, username));
+        }
+
+        // Batch download: int count and the filenames. The reply is true and the count, then per file
+        // in request order its name, whether it was found, and if so its length and bytes.
+        private void handleBatchRetrieve() throws IOException {
+            String username = authorize(input.readUTF());
+            int count = input.readInt();
+            if (count < 0 || count > MAX_BATCH_FILES) {
+                output.writeBoolean(false);
+                output.writeUTF("INVALID_BATCH");
+                closeConnection();
+                return;
+            }
+            String[] filenames = new String[count];
+            for (int i = 0; i < count; i++) {
+                filenames[i] = input.readUTF();
+            }
+
+            if (username == null) {
+                output.writeBoolean(false);
+                output.writeUTF("AUTH_REQUIRED");
+                return;
+            }
+
+            output.writeBoolean(true);
+            output.writeInt(count);
+            int found = 0;
+            long totalSent = 0;
+            for (String filename : filenames) {
+                output.writeUTF(filename);
+                FileRecord record = Database.findFile(username, filename);
+                File file = record != null ? storedFile(record) : null;
+                if (file == null || !file.isFile()) {
+                    output.writeBoolean(false);
+                    continue;
+                }
+                long length = file.length();
+                output.writeBoolean(true);
+                output.writeLong(length);
+                long sent = sendStoredFile(username, record, file, 0, length);
+                ServerMetrics.bytesSent(sent);
+                totalSent += sent;
+                found++;
+            }
+            output.flush();
+            System.out.printf("[%s] Batch sent: %d of %d files to %s (%d bytes)\n", clientIP, found, count, username, totalSent);
+            ServerLogs.log(String.format("[%s] Batch download: %d of %d files by %s", clientIP, found, count, username));
+        }
+
+        // Instant upload: the client sends the SHA-256 of the content, and if that content is
+        // already stored the file is linked to it without sending any bytes
+        private void handleUploadByHash() throws IOException {
+            String username = authorize(input.readUTF());
+            String filename = input.readUTF();
+            String hash = input.readUTF().toLowerCase(Locale.ROOT);
+
+            if (username == null) {
+                output.writeUTF("AUTH_REQUIRED");
+                return;
+            }
+
+            if (Database.fileExistsForUser(username, filename)) {
+                output.writeUTF("DUPLICATE_FILE");
+                System.out.printf("[%s] Duplicate file rejected: %s by %s\n", clientIP, filename, username);
+                ServerLogs.log(String.format("[%s] Duplicate file: %s by %s", clientIP, filename, username));
+                return;
+            }
+
+            long size = blobStore.contains(hash) ? Database.findBlobSize(hash) : -1;
+            if (size < 0) {
+                output.writeUTF("HASH_UNKNOWN");
+                System.out.printf("[%s] Unknown content hash for %s, client must upload\n", clientIP, filename);
+                return;
+            }
+            if (exceedsQuota(username, size)) {
+                rejectOverQuota(username, filename);
+                return;
+            }
+
+            if (!Database.saveFile(username, filename, size, hash)) {
+                reportUnsaved(username, filename);
+                return;
+            }
+            output.writeUTF("UPLOAD_SUCCESS");
+            System.out.printf("[%s] File linked to stored content: %s by %s (%d bytes)\n",
+                    clientIP, filename, username, size);
+            ServerLogs.log(String.format("[%s] File uploaded by hash: %s by %s", clientIP, filename, username));
+        }
+
+        // Chunked upload: reply with a session ID, the chunk size and the chunk count. Sending
+        // UPLOAD_INIT again for the same file returns the unfinished session so it can resume.
+        private void handleUploadInit() throws IOException {
+            String username = authorize(input.readUTF());
+            String filename = input.readUTF();
+            long fileSize = input.readLong();
+            int chunkSize = input.readInt();
+
+            if (username == null) {
+                output.writeUTF("AUTH_REQUIRED");
+                return;
+            }
+            if (!UploadSessionManager.acceptsSize(fileSize, chunkSize)) {
+                output.writeUTF("UPLOAD_FAILED");
+                System.out.printf("[%s] Upload session rejected: %s by %s declared %d bytes\n",
+                        clientIP, filename, username, fileSize);
+                return;
+            }
+            if (Database.fileExistsForUser(username, filename)) {
+                output.writeUTF("DUPLICATE_FILE");
+                System.out.printf("[%s] Duplicate file rejected: %s by %s\n", clientIP, filename, username);
+                ServerLogs.log(String.format("[%s] Duplicate file: %s by %s", clientIP, filename, username));
+                return;
+            }
+            if (exceedsQuota(username, fileSize)) {
+                rejectOverQuota(username, filename);
+                return;
+            }
+
+            UploadSessionManager.UploadSession session = uploadSessions.open(username, filename, fileSize, chunkSize);
+            output.writeUTF("UPLOAD_READY");
+            output.writeUTF(session.id());
+            output.writeInt(session.chunkSize());
+            output.writeInt(session.chunkCount());
+            output.flush();
+            System.out.printf("[%s] Upload session %s: %s by %s (%d chunks)\n",
+                    clientIP, session.id(), filename, username, session.chunkCount());
+        }
+
+        // One chunk: session ID, index, CRC32C of the data, length, then the data
+        private void handleUploadChunk() throws IOException {
+            String sessionId = input.readUTF();
+            int index = input.readInt();
+            int checksum = input.readInt();
+            int length = input.readInt();
+
+            UploadSessionManager.UploadSession session = uploadSessions.get(sessionId);
+            if (session == null || !session.isValidChunk(index, length)) {
+                if (length > 0) {
+                    drainInput(length);
+                }
+                output.writeUTF(session == null ? "UNKNOWN_SESSION" : "INVALID_CHUNK");
+                return;
+            }
+
+            UserLimits.uploads(session.username(), connection.uploadBucket, length).acquire(length);
+            byte[] data = new byte[length];
+            input.readFully(data);
+            ServerMetrics.bytesReceived(length);
+            CRC32C crc = new CRC32C();
+            crc.update(data, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                output.writeUTF("CHUNK_CORRUPT");
+                System.out.printf("[%s] Corrupt chunk %d for session %s\n", clientIP, index, sessionId);
+                ServerLogs.log(String.format("[%s] Corrupt chunk %d for upload session %s", clientIP, index, sessionId));
+                return;
+            }
+
+            session.writeChunk(index, ByteBuffer.wrap(data));
+            output.writeUTF("CHUNK_OK");
+        }
+
+        // Lists the chunks the server still needs
+        private void handleUploadStatus() throws IOException {
+            String sessionId = input.readUTF();
+            UploadSessionManager.UploadSession session = uploadSessions.get(sessionId);
+            if (session == null) {
+                output.writeUTF("UNKNOWN_SESSION");
+                return;
+            }
+            List<Integer> missing = session.missingChunks();
+            output.writeUTF("UPLOAD_STATUS");
+            output.writeInt(missing.size());
+            for (int index : missing) {
+                output.writeInt(index);
+            }
+            output.flush();
+        }
+
+        private void handleUploadComplete() throws IOException {
+            String sessionId = input.readUTF();
+            UploadSessionManager.UploadSession session = uploadSessions.get(sessionId);
+            if (session == null) {
+                output.writeUTF("UNKNOWN_SESSION");
+                return;
+            }
+            List<Integer> missing = session.missingChunks();
+            if (!missing.isEmpty()) {
+                output.writeUTF("CHUNKS_MISSING");
+                output.writeInt(missing.size());
+                return;
+            }
+
+            String username = session.username();
+            String filename = session.filename();
+            try {
+                session.seal();
+                BlobStore.IncomingBlob blob = blobStore.adopt(session.partFile());
+                blobStore.commit(blob);
+                uploadSessions.finish(session);
+
+                if (!Database.saveFile(username, filename, blob.size(), blob.hash())) {
+                    reportUnsaved(username, filename);
+                    return;
+                }
+                output.writeUTF("UPLOAD_SUCCESS");
+                System.out.printf("[%s] Chunked upload complete: %s by %s (%d bytes)\n",
+                        clientIP, filename, username, blob.size());
+                ServerLogs.log(String.format("[%s] File uploaded in chunks: %s by %s", clientIP, filename, username));
             } catch (IOException e) {
+                uploadSessions.abandon(session);
                 output.writeUTF("UPLOAD_FAILED");
                 System.err.printf("[%s] Upload failed: %s\n", clientIP, e.getMessage());
                 ServerLogs.log(String.format("[%s] Upload failed: %s", clientIP, e.getMessage()));
@@ -306,7 +1141,7 @@ public class FileServer {
 
         private void drainInput(long bytesToDrain) throws IOException {
             long remaining = bytesToDrain;
-            byte[] buffer = new byte[4096];
+            byte[] buffer = new byte[FileTransfer.IO_BUFFER_BYTES];
             while (remaining > 0) {
                 int bytesRead = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
                 if (bytesRead == -1) break;
@@ -314,14 +1149,25 @@ public class FileServer {
             }
         }
 
-        private void handleClientRequest() throws IOException {
-            String username = input.readUTF();
+        // RETRIEVE_Z adds the codecs the client accepts; its reply carries the chosen codec after the size
+        // RETRIEVE_VERIFIED sends the content's digest ("sha256:<hex>", or "" for files stored
+        // before content addressing) after the size, so the client can check what it received
+        private void handleClientRequest(boolean compressed, boolean verified) throws IOException {
+            String username = authorize(input.readUTF());
             String filename = input.readUTF();
+            String offered = compressed ? input.readUTF() : TransferCompression.IDENTITY;
+
+            if (username == null) {
+                output.writeBoolean(false);
+                output.writeUTF("AUTH_REQUIRED");
+                return;
+            }
 
             System.out.printf("[%s] File request: %s by %s\n", clientIP, filename, username);
             ServerLogs.log(String.format("[%s] File request: %s by %s", clientIP, filename, username));
 
-            if (!fileBelongsToUser(username, filename)) {
+            FileRecord record = Database.findFile(username, filename);
+            if (record == null) {
                 output.writeBoolean(false);
                 output.writeUTF("ACCESS_DENIED");
                 System.out.printf("[%s] Access denied: %s for %s\n", clientIP, filename, username);
@@ -330,48 +1176,96 @@ public class FileServer {
             }
 
             output.writeBoolean(true);
-            byte[] fileContent = getFileContentFromDisk(filename);
-            if (fileContent != null) {
-                output.writeLong(fileContent.length);
-                output.write(fileContent);
-                System.out.printf("[%s] File sent: %s to %s (%d bytes)\n",
-                        clientIP, filename, username, fileContent.length);
+            File file = storedFile(record);
+            if (file.isFile()) {
+                long length = file.length();
+                output.writeLong(length);
+                if (verified) {
+                    output.writeUTF(record.blobHash() != null ? "sha256:" + record.blobHash() : "");
+                }
+                String codec = compressed ? TransferCompression.choose(offered, filename) : TransferCompression.IDENTITY;
+                if (compressed) {
+                    output.writeUTF(codec);
+                }
+                long sent = TransferCompression.DEFLATE.equals(codec)
+                        ? TransferCompression.sendDeflated(file, output, UserLimits.downloads(username, connection.downloadBucket, length))
+                        : sendStoredFile(username, record, file, 0, length);
+                ServerMetrics.bytesSent(sent);
+                System.out.printf("[%s] File sent: %s to %s (%d bytes, %d on the wire)\n",
+                        clientIP, filename, username, length, sent);
                 ServerLogs.log(String.format("[%s] File sent: %s", clientIP, filename));
             } else {
                 output.writeLong(0);
+                if (verified) {
+                    output.writeUTF("");
+                }
+                if (compressed) {
+                    output.writeUTF(TransferCompression.IDENTITY);
+                }
                 System.out.printf("[%s] File not found: %s\n", clientIP, filename);
                 ServerLogs.log(String.format("[%s] File not found: %s", clientIP, filename));
             }
         }
 
-        private static boolean fileBelongsToUser(String username, String filename) {
-            try (Connection conn = DriverManager.getConnection(URL);
-                 PreparedStatement stmt = conn.prepareStatement(
-                         "SELECT COUNT(*) FROM files WHERE filename = ? AND username = ?")) {
-                stmt.setString(1, filename);
-                stmt.setString(2, username);
-                ResultSet rs = stmt.executeQuery();
-                return rs.next() && rs.getInt(1) > 0;
-            } catch (SQLException e) {
-                System.err.println("Database error checking file ownership: " + e.getMessage());
-                return false;
+        // Resume a download: sends the total file size, then the bytes from the given offset onwards
+        private void handleRangeRequest() throws IOException {
+            String username = authorize(input.readUTF());
+            String filename = input.readUTF();
+            long offset = input.readLong();
+
+            if (username == null) {
+                output.writeBoolean(false);
+                output.writeUTF("AUTH_REQUIRED");
+                return;
             }
-        }
 
-        private static byte[] getFileContentFromDisk(String filename) {
-            File file = new File(UPLOAD_DIR, filename);
-            if (!file.exists()) {
-                return null;
+            System.out.printf("[%s] Range request: %s by %s from offset %d\n", clientIP, filename, username, offset);
+            ServerLogs.log(String.format("[%s] Range request: %s by %s from %d", clientIP, filename, username, offset));
+
+            FileRecord record = Database.findFile(username, filename);
+            if (record == null) {
+                output.writeBoolean(false);
+                output.writeUTF("ACCESS_DENIED");
+                System.out.printf("[%s] Access denied: %s for %s\n", clientIP, filename, username);
+                ServerLogs.log(String.format("[%s] Access denied: %s", clientIP, filename));
+                return;
             }
 
-            try (FileInputStream fis = new FileInputStream(file)) {
-                byte[] content = new byte[(int) file.length()];
-                fis.read(content);
-                return content;
-            } catch (IOException e) {
-                System.err.println("Error reading file: " + e.getMessage());
-                return null;
+            File file = storedFile(record);
+            long length = file.isFile() ? file.length() : 0;
+            if (offset < 0 || offset > length) {
+                output.writeBoolean(false);
+                output.writeUTF("INVALID_RANGE");
+                System.out.printf("[%s] Invalid range: %s offset %d (size %d)\n", clientIP, filename, offset, length);
+                return;
+            }
+
+            output.writeBoolean(true);
+            output.writeLong(length);
+            output.writeLong(length - offset);
+            long sent = length > offset ? sendStoredFile(username, record, file, offset, length - offset) : 0;
+            ServerMetrics.bytesSent(sent);
+            output.flush();
+            System.out.printf("[%s] File range sent: %s to %s (%d bytes from %d)\n",
+                    clientIP, filename, username, sent, offset);
+            ServerLogs.log(String.format("[%s] File range sent: %s", clientIP, filename));
+        }
+
+        // Serve from the hot-file cache when the file is popular enough to be held in memory
+        private long sendStoredFile(String username, FileRecord record, File file, long offset, long count) throws IOException {
+            Throttle throttle = UserLimits.downloads(username, connection.downloadBucket, count);
+            String key = record.blobHash() != null ? record.blobHash() : file.getPath();
+            ByteBuffer cached = contentCache.get(key, file);
+            if (cached != null && offset + count <= cached.remaining()) {
+                cached.position((int) offset).limit((int) (offset + count));
+                return FileTransfer.sendBuffer(cached, output, directChannel(), throttle);
             }
+            return FileTransfer.sendFile(file, offset, count, output, directChannel(), throttle);
+        }
+
+        // Where a file's bytes live: its blob, or the flat upload directory for files stored before blobs
+        private static File storedFile(FileRecord record) throws IOException {
+            return record.blobHash() != null ? blobStore.fileFor(record.blobHash()) : new File(UPLOAD_DIR, record.filename());
         }
     }
 }
\ No newline at end of file
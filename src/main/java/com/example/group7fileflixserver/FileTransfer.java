@@ -0,0 +1,70 @@
+package com.example.group7fileflixserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+// Streams file contents to a client without loading the whole file into memory
+public class FileTransfer {
+
+    // Size of the buffers used to copy upload bodies
+    static final int IO_BUFFER_BYTES = ServerConfig.getInt("io.bufferBytes", 64 * 1024);
+
+    private FileTransfer() {
+    }
+
+    // Send 'count' bytes of the file starting at 'offset'. FileChannel.transferTo lets the
+    // kernel use sendfile when the target is a socket channel, otherwise it copies in chunks.
+    // 'direct' is the socket's own channel when the bytes may bypass 'out' (null otherwise).
+    public static long sendFile(File file, long offset, long count, OutputStream out, WritableByteChannel direct) throws IOException {
+        return sendFile(file, offset, count, out, direct, Throttle.NONE);
+    }
+
+    // As above, charging the bytes to 'throttle' one slice at a time
+    public static long sendFile(File file, long offset, long count, OutputStream out, WritableByteChannel direct,
+                                Throttle throttle) throws IOException {
+        out.flush();
+        long maxSlice = throttle.isUnlimited() ? Long.MAX_VALUE : Throttle.SLICE_BYTES;
+        WritableByteChannel target = direct != null ? direct : Channels.newChannel(out);
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = offset;
+            long end = offset + count;
+            while (position < end) {
+                long sent = source.transferTo(position, Math.min(end - position, maxSlice), target);
+                if (sent <= 0) {
+                    // File shrank underneath us
+                    if (position >= source.size()) {
+                        throw new IOException("File truncated while sending: " + file.getName());
+                    }
+                    continue;
+                }
+                position += sent;
+                throttle.acquire(sent);
+            }
+            return position - offset;
+        }
+    }
+
+    // Send bytes already held in memory, e.g. from the hot-file cache
+    public static long sendBuffer(ByteBuffer buffer, OutputStream out, WritableByteChannel direct, Throttle throttle) throws IOException {
+        out.flush();
+        WritableByteChannel target = direct != null ? direct : Channels.newChannel(out);
+        int end = buffer.limit();
+        long sent = 0;
+        while (buffer.position() < end) {
+            if (!throttle.isUnlimited()) {
+                buffer.limit(Math.min(end, buffer.position() + Throttle.SLICE_BYTES));
+            }
+            int written = target.write(buffer);
+            throttle.acquire(written);
+            sent += written;
+            buffer.limit(end);
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Blobs on the local disk, sharded by hash prefix (blobs/ab/cd/abcd...) to keep directories small
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path directory;
+
+    public LocalStorageBackend(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public Path pathFor(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    @Override
+    public void initialize() throws IOException {
+        Files.createDirectories(directory);
+    }
+
+    @Override
+    public boolean contains(String hash) {
+        return Files.isRegularFile(pathFor(hash));
+    }
+
+    @Override
+    public void store(String hash, Path staged) throws IOException {
+        Path target = pathFor(hash);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public Path localPath(String hash) {
+        return pathFor(hash);
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.group7fileflixserver;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Framed protocol (version 2 and 3), entered when a client sends HELLO. Every frame is
+//     int streamId, byte type (DATA/END/RESET/WINDOW), int length, payload
+// and a stream carries exactly one command: the client sends the command in the usual
+// readUTF encoding as DATA frames, then END; the server answers on the same stream ID
+// with the usual response bytes, then END. Streams run concurrently on virtual threads
+// and their DATA frames interleave, so a large RETRIEVE does not hold up a HEARTBEAT.
+//
+// The frame reader never waits for a stream's handler. Each stream may have STREAM_WINDOW
+// bytes of request data buffered; a stream that sends more is reset. From version 3 the
+// server sends WINDOW frames (payload: int byte count) as its handler consumes data, and a
+// client must not send more than STREAM_WINDOW bytes beyond what it has been granted. Frames
+// the client still sends for a stream that was reset, refused or already answered are
+// dropped until the client ends that stream.
+public class MultiplexedSession {
+
+    public static final int VERSION = 3;
+    public static final byte DATA = 0;
+    public static final byte END = 1;
+    public static final byte RESET = 2;
+    public static final byte WINDOW = 3;
+    public static final int STREAM_WINDOW = 4 * 1024 * 1024;
+
+    private static final int MAX_FRAME = 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_STREAMS = 32;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final FileServer.ClientHandler connection;
+    private final Socket socket;
+    private final boolean flowControl;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    // Streams refused because too many were open; only the reader thread uses this
+    private final Set<Integer> refused = new HashSet<>();
+    private final ThreadFactory workers = Thread.ofVirtual().name("stream-", 0).factory();
+    private volatile boolean closing;
+
+    MultiplexedSession(FileServer.ClientHandler connection, Socket socket, InputStream rawIn, OutputStream rawOut, int version) {
+        this.connection = connection;
+        this.socket = socket;
+        this.flowControl = version >= 3;
+        this.in = new DataInputStream(rawIn);
+        this.out = new DataOutputStream(new BufferedOutputStream(rawOut, CHUNK_SIZE + 16));
+    }
+
+    // Read frames until the client disconnects; runs on a virtual thread of its own
+    void run() {
+        try {
+            while (!closing && !socket.isClosed()) {
+                int id;
+                try {
+                    id = in.readInt();
+                } catch (SocketTimeoutException e) {
+                    // Quiet clients are fine while their downloads are still streaming
+                    if (streams.isEmpty()) {
+                        throw e;
+                    }
+                    continue;
+                }
+                byte type = in.readByte();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                onFrame(id, type, payload);
+            }
+        } catch (IOException e) {
+            if (!closing) {
+                System.err.printf("[%s] Multiplexed session ended: %s\n", socket.getInetAddress().getHostAddress(), e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void onFrame(int id, byte type, byte[] payload) throws IOException {
+        if (type != DATA && type != END && type != RESET) {
+            throw new IOException("Unknown frame type " + type);
+        }
+        if (refused.contains(id)) {
+            if (type != DATA) {
+                refused.remove(id);
+            }
+            return;
+        }
+        Stream stream = streams.get(id);
+        if (stream == null) {
+            if (type == RESET) {
+                return;
+            }
+            stream = open(id);
+            if (stream == null) {
+                if (type == DATA) {
+                    refused.add(id);
+                }
+                return;
+            }
+        }
+        if (type == DATA) {
+            stream.received(payload);
+        } else {
+            stream.clientDone(type == RESET);
+        }
+    }
+
+    private Stream open(int id) throws IOException {
+        if (streams.size() >= MAX_STREAMS) {
+            if (refused.size() >= MAX_STREAMS) {
+                throw new IOException("Too many refused streams");
+            }
+            // Written on another thread so a client that isn't reading can't stall the reader
+            workers.newThread(() -> {
+                try {
+                    writeFrame(id, RESET, EMPTY, 0, 0);
+                } catch (IOException e) {
+                    // the connection is already going away
+                }
+            }).start();
+            return null;
+        }
+        Stream stream = new Stream(id);
+        streams.put(id, stream);
+        workers.newThread(stream::serve).start();
+        return stream;
+    }
+
+    private void writeFrame(int id, byte type, byte[] data, int offset, int length) throws IOException {
+        synchronized (out) {
+            out.writeInt(id);
+            out.writeByte(type);
+            out.writeInt(length);
+            out.write(data, offset, length);
+            out.flush();
+        }
+    }
+
+    private void close() {
+        closing = true;
+        streams.values().forEach(Stream::abort);
+        streams.clear();
+        connection.closeConnection();
+    }
+
+    // One request/response exchange
+    class Stream {
+        private final int id;
+        private final StreamInput input = new StreamInput();
+        private final StreamOutput output = new StreamOutput();
+        // Guarded by this: the stream leaves the map once both sides are done with it
+        private boolean answered;
+        private boolean clientDone;
+
+        Stream(int id) {
+            this.id = id;
+        }
+
+        private void serve() {
+            FileServer.ClientHandler handler = connection.forStream(input, output);
+            try {
+                handler.serveNextCommand();
+                if (input.reset) {
+                    output.abort();
+                } else {
+                    output.finish();
+                }
+            } catch (IOException e) {
+                abort();
+            } finally {
+                input.discard();
+                synchronized (this) {
+                    answered = true;
+                    if (clientDone) {
+                        streams.remove(id);
+                    }
+                }
+            }
+            if (handler.logoutRequested()) {
+                closing = true;
+                close();
+            }
+        }
+
+        // A DATA frame from the reader thread
+        void received(byte[] payload) {
+            synchronized (this) {
+                if (answered) {
+                    return;
+                }
+            }
+            if (!input.add(payload)) {
+                // Overran its window: the handler fails on its next read and the stream is reset
+                input.abort();
+            }
+        }
+
+        // END or RESET from the client
+        void clientDone(boolean reset) {
+            synchronized (this) {
+                clientDone = true;
+                if (answered) {
+                    streams.remove(id);
+                    return;
+                }
+            }
+            if (reset) {
+                input.abort();
+            } else {
+                input.end();
+            }
+        }
+
+        void abort() {
+            input.abort();
+            output.abort();
+        }
+
+        // Bytes the client has sent on this stream, fed by the session's reader
+        private class StreamInput extends InputStream {
+            private final byte[] endMarker = new byte[0];
+            private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+            // Bytes queued but not yet taken by the handler
+            private final AtomicInteger buffered = new AtomicInteger();
+            private byte[] current;
+            private int position;
+            private int ungranted;
+            private volatile boolean reset;
+            private boolean ended;
+
+            // Never blocks; returns false if the payload takes the stream past its window
+            boolean add(byte[] payload) {
+                if (reset || payload.length == 0) {
+                    return true;
+                }
+                if (buffered.addAndGet(payload.length) > STREAM_WINDOW) {
+                    return false;
+                }
+                frames.offer(payload);
+                return true;
+            }
+
+            void end() {
+                frames.offer(endMarker);
+            }
+
+            void abort() {
+                reset = true;
+                frames.clear();
+                frames.offer(endMarker);
+            }
+
+            // The handler is done; free whatever it didn't read
+            void discard() {
+                frames.clear();
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                while (current == null || position == current.length) {
+                    if (ended) {
+                        return -1;
+                    }
+                    byte[] next;
+                    try {
+                        next = frames.poll(FileServer.CLIENT_TIMEOUT, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted reading stream " + id);
+                    }
+                    if (next == null) {
+                        throw new SocketTimeoutException("Stream " + id + " timed out");
+                    }
+                    if (reset) {
+                        throw new IOException("Stream " + id + " was reset");
+                    }
+                    if (next == endMarker) {
+                        ended = true;
+                        return -1;
+                    }
+                    consumed(next.length);
+                    current = next;
+                    position = 0;
+                }
+                int count = Math.min(length, current.length - position);
+                System.arraycopy(current, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+
+            // Return window credit a quarter of the window at a time. The client can only be
+            // waiting for credit once it has a full window outstanding, and then the handler
+            // consumes at least a quarter of it before it runs out of data.
+            private void consumed(int bytes) throws IOException {
+                buffered.addAndGet(-bytes);
+                if (!flowControl) {
+                    return;
+                }
+                ungranted += bytes;
+                if (ungranted >= STREAM_WINDOW / 4) {
+                    byte[] credit = ByteBuffer.allocate(Integer.BYTES).putInt(ungranted).array();
+                    ungranted = 0;
+                    writeFrame(id, WINDOW, credit, 0, credit.length);
+                }
+            }
+        }
+
+        // Response bytes, cut into DATA frames of at most CHUNK_SIZE
+        private class StreamOutput extends OutputStream {
+            private final byte[] buffer = new byte[CHUNK_SIZE];
+            private int count;
+            private volatile boolean reset;
+            private boolean finished;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (count == buffer.length) {
+                    flush();
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                while (length > 0) {
+                    if (count == buffer.length) {
+                        flush();
+                    }
+                    int n = Math.min(length, buffer.length - count);
+                    System.arraycopy(data, offset, buffer, count, n);
+                    count += n;
+                    offset += n;
+                    length -= n;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (reset) {
+                    throw new IOException("Stream " + id + " was reset");
+                }
+                if (count > 0) {
+                    writeFrame(id, DATA, buffer, 0, count);
+                    count = 0;
+                }
+            }
+
+            void finish() throws IOException {
+                if (finished) {
+                    return;
+                }
+                flush();
+                finished = true;
+                writeFrame(id, END, buffer, 0, 0);
+            }
+
+            void abort() {
+                reset = true;
+                try {
+                    if (!finished && !socket.isClosed()) {
+                        finished = true;
+                        writeFrame(id, RESET, buffer, 0, 0);
+                    }
+                } catch (IOException e) {
+                    // the connection is already going away
+                }
+            }
+        }
+    }
+}
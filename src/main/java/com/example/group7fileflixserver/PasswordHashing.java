@@ -4,9 +4,16 @@ import org.mindrot.jbcrypt.BCrypt;
 
 public class PasswordHashing {
 
+    // BCrypt work factor for new hashes (-Dfileflix.bcrypt.cost); existing hashes keep the cost they were made with
+    private static final int WORK_FACTOR = ServerConfig.getInt("bcrypt.cost", 10);
+
     // Hash a plain text password
     public static String hashPassword(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt());
+        return hashPassword(password, WORK_FACTOR);
+    }
+
+    public static String hashPassword(String password, int workFactor) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(workFactor));
     }
 
     // Verify if the provided password matches the stored hashed password
@@ -0,0 +1,261 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Blobs in an S3-compatible object store (AWS S3, MinIO, ...), shared by every server node.
+// Requests are signed with AWS Signature Version 4 and use path-style URLs. Blobs a node serves
+// are kept in a local read-through cache bounded by storage.s3.cacheBytes, so repeated downloads
+// are sent from local disk.
+//
+//   storage.s3.endpoint     e.g. http://localhost:9000
+//   storage.s3.bucket, storage.s3.region (us-east-1), storage.s3.prefix (blobs/)
+//   storage.s3.accessKey, storage.s3.secretKey
+//   storage.s3.cacheBytes   local cache budget (default 10 GB)
+public class S3StorageBackend implements StorageBackend {
+
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(10);
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String prefix;
+    private final String accessKey;
+    private final String secretKey;
+    private final Path cacheDir;
+    private final long cacheBytes;
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public S3StorageBackend(Path cacheDir) {
+        this.endpoint = URI.create(require("storage.s3.endpoint"));
+        this.bucket = require("storage.s3.bucket");
+        this.region = ServerConfig.getString("storage.s3.region", "us-east-1");
+        this.prefix = ServerConfig.getString("storage.s3.prefix", "blobs/");
+        this.accessKey = require("storage.s3.accessKey");
+        this.secretKey = require("storage.s3.secretKey");
+        this.cacheDir = cacheDir;
+        this.cacheBytes = ServerConfig.getLong("storage.s3.cacheBytes", 10L * 1024 * 1024 * 1024);
+    }
+
+    private static String require(String key) {
+        String value = ServerConfig.get(key);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(key + " must be set for the s3 storage backend");
+        }
+        return value;
+    }
+
+    @Override
+    public void initialize() throws IOException {
+        Files.createDirectories(cacheDir);
+        long total = 0;
+        for (Path file : cachedFiles()) {
+            total += Files.size(file);
+        }
+        cachedBytes.set(total);
+        System.out.println("Blob storage: s3 bucket " + bucket + " at " + endpoint);
+    }
+
+    @Override
+    public boolean contains(String hash) throws IOException {
+        if (Files.isRegularFile(cachePath(hash))) {
+            return true;
+        }
+        HttpResponse<Void> response = send(request("HEAD", hash, EMPTY_SHA256)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        expectSuccess(response, "HEAD", hash);
+        return true;
+    }
+
+    @Override
+    public void store(String hash, Path staged) throws IOException {
+        // The payload hash S3 verifies is the blob's own SHA-256
+        HttpResponse<String> response = send(request("PUT", hash, hash)
+                .PUT(HttpRequest.BodyPublishers.ofFile(staged)), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "PUT", hash);
+        // The node that received the upload is the likeliest to be asked for it next
+        addToCache(hash, staged);
+    }
+
+    @Override
+    public Path localPath(String hash) throws IOException {
+        Path cached = cachePath(hash);
+        if (Files.isRegularFile(cached)) {
+            // The modification time orders the cache for eviction
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            return cached;
+        }
+
+        Path download = Files.createTempFile(cacheDir, "fetch-", ".part");
+        try {
+            HttpResponse<Path> response = send(request("GET", hash, EMPTY_SHA256).GET(),
+                    HttpResponse.BodyHandlers.ofFile(download));
+            if (response.statusCode() == 404) {
+                return cached;
+            }
+            expectSuccess(response, "GET", hash);
+            if (!hash.equals(BlobStore.hash(download))) {
+                throw new IOException("Blob " + hash + " from object store does not match its hash");
+            }
+            addToCache(hash, download);
+            return cached;
+        } finally {
+            Files.deleteIfExists(download);
+        }
+    }
+
+    private Path cachePath(String hash) {
+        return cacheDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private void addToCache(String hash, Path file) throws IOException {
+        Path target = cachePath(hash);
+        Files.createDirectories(target.getParent());
+        long size = Files.size(file);
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (cachedBytes.addAndGet(size) > cacheBytes) {
+            trimCache();
+        }
+    }
+
+    // Delete the least recently used cached blobs until the cache fits its budget again
+    private synchronized void trimCache() throws IOException {
+        if (cachedBytes.get() <= cacheBytes) {
+            return;
+        }
+        List<Path> files = cachedFiles();
+        Map<Path, Long> lastUsed = new HashMap<>();
+        for (Path file : files) {
+            lastUsed.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparing(lastUsed::get));
+        for (Path file : files) {
+            if (cachedBytes.get() <= cacheBytes * 9 / 10) {
+                break;
+            }
+            long size = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                cachedBytes.addAndGet(-size);
+            }
+        }
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(cacheDir, Files::isDirectory)) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(shard)) {
+                    entries.forEach(files::add);
+                }
+            }
+        }
+        return files;
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during object store request", e);
+        }
+    }
+
+    private static void expectSuccess(HttpResponse<?> response, String method, String hash) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Object store " + method + " of " + hash + " failed with HTTP " + response.statusCode());
+        }
+    }
+
+    private HttpRequest.Builder request(String method, String hash, String payloadHash) {
+        String path = "/" + bucket + "/" + prefix + hash;
+        URI uri = endpoint.resolve(path);
+        String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        String amzDate = AMZ_DATE.format(ZonedDateTime.now(ZoneOffset.UTC));
+
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("host", host);
+        headers.put("x-amz-content-sha256", payloadHash);
+        headers.put("x-amz-date", amzDate);
+        String authorization = authorization(method, path, headers, payloadHash, amzDate, region, accessKey, secretKey);
+
+        // HttpClient sets the Host header itself from the URI
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("x-amz-content-sha256", payloadHash)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", authorization);
+    }
+
+    // AWS Signature Version 4 for a request without a query string. 'headers' are the signed
+    // headers with lower-case names, in sorted order.
+    static String authorization(String method, String path, Map<String, String> headers, String payloadHash,
+                                String amzDate, String region, String accessKey, String secretKey) {
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue().trim()).append('\n');
+        }
+        String signedHeaders = String.join(";", headers.keySet());
+        String canonicalRequest = method + "\n" + path + "\n\n" + canonicalHeaders + "\n" + signedHeaders + "\n" + payloadHash;
+
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+                + HexFormat.of().formatHex(BlobStore.newDigest().digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(key, stringToSign));
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature;
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
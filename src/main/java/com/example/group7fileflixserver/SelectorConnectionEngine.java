@@ -0,0 +1,192 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Non-blocking engine: idle connections are parked on a single selector and only take a
+// worker thread while a command is being handled. The handler code stays blocking - the
+// channel is switched to blocking mode for the duration of one command, then handed back.
+public class SelectorConnectionEngine implements ConnectionEngine {
+
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private final ExecutorService workers;
+    private final Queue<Connection> readyToPark = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean accepting = true;
+    private long lastIdleSweep = System.currentTimeMillis();
+
+    public SelectorConnectionEngine(int workerThreads) {
+        this.workers = Executors.newFixedThreadPool(workerThreads,
+                Thread.ofPlatform().name("nio-worker-", 0).daemon(true).factory());
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        ServerConfig.configure(serverChannel.socket());
+        serverChannel.bind(new InetSocketAddress(port), ServerConfig.backlog());
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    @Override
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void serve() throws IOException {
+        try {
+            while (selector.isOpen()) {
+                selector.select(SELECT_TIMEOUT);
+                if (!accepting && serverChannel.isOpen()) {
+                    serverChannel.close();
+                }
+                parkReturnedConnections();
+
+                List<Connection> ready = new ArrayList<>();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        key.cancel();
+                        ready.add((Connection) key.attachment());
+                    }
+                }
+
+                if (!ready.isEmpty()) {
+                    // Flush the cancelled keys so the channels may switch to blocking mode
+                    selector.selectNow();
+                    for (Connection connection : ready) {
+                        dispatch(connection);
+                    }
+                }
+                closeIdleConnections();
+            }
+        } catch (ClosedSelectorException e) {
+            // engine closed while selecting
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        FileServer.connectionOpened(channel.socket());
+        Connection connection = new Connection(channel);
+        channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void dispatch(Connection connection) {
+        try {
+            connection.channel.configureBlocking(true);
+        } catch (IOException e) {
+            connection.handler.closeConnection();
+            return;
+        }
+        workers.execute(() -> {
+            boolean open = (connection.started || connection.start()) && connection.handler.serveNextCommand();
+            if (!open) {
+                return;
+            }
+            try {
+                connection.channel.configureBlocking(false);
+                connection.lastActivity = System.currentTimeMillis();
+                readyToPark.add(connection);
+                selector.wakeup();
+            } catch (IOException e) {
+                connection.handler.closeConnection();
+            }
+        });
+    }
+
+    private void parkReturnedConnections() {
+        Connection connection;
+        while ((connection = readyToPark.poll()) != null) {
+            try {
+                connection.channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                connection.handler.closeConnection();
+            }
+        }
+    }
+
+    // Blocking reads enforce the client timeout while a command runs; parked connections are checked here
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleSweep < SELECT_TIMEOUT) {
+            return;
+        }
+        lastIdleSweep = now;
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection connection
+                    && now - connection.lastActivity > FileServer.CLIENT_TIMEOUT) {
+                String clientIP = connection.channel.socket().getInetAddress().getHostAddress();
+                System.out.printf("[%s] Client idle timeout\n", clientIP);
+                ServerLogs.log("Client timeout: " + clientIP);
+                key.cancel();
+                connection.handler.closeConnection();
+            }
+        }
+    }
+
+    @Override
+    public void stopAccepting() {
+        // The selector thread closes the channel so it isn't deregistered mid-select
+        accepting = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        workers.shutdownNow();
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        if (selector != null) {
+            selector.close();
+        }
+    }
+
+    private static class Connection {
+        private final SocketChannel channel;
+        private final FileServer.ClientHandler handler;
+        private volatile boolean started;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.handler = new FileServer.ClientHandler(channel.socket());
+        }
+
+        boolean start() {
+            started = handler.start();
+            return started;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+// Server settings. Each key can be set, from lowest to highest precedence, in the config file,
+// as an environment variable (FILEFLIX_ plus the key in upper case with dots as underscores, e.g.
+// FILEFLIX_DB_PATH) or as a system property (fileflix. plus the key, e.g. -Dfileflix.db.path).
+// The config file is fileflix.properties in the working directory, or the file named by
+// -Dfileflix.config / FILEFLIX_CONFIG. See config/ for example profiles.
+//
+// Network:    port, engine, client.timeoutMs, socket.tcpNoDelay, socket.sendBufferBytes,
+//             socket.receiveBufferBytes, socket.backlog, socket.reusePort
+// Shutdown:   idle.exitEnabled, idle.timeoutMs, idle.checkIntervalMs, drain.timeoutMs
+// Storage:    upload.dir, upload.sessionTtlMinutes, upload.maxFileBytes, io.bufferBytes, limits.file,
+//             limits.reloadSeconds, batch.maxFiles, list.maxPage, storage.backend,
+//             storage.s3.* (see S3StorageBackend)
+// Caches:     cache.contentBytes, cache.maxFileBytes, cache.users, cache.filesPerUser
+// Database:   db.path, db.url, db.readers, db.validateAfterSeconds
+// Auth:       auth.threads, auth.queue, auth.requireToken, bcrypt.cost, session.ttlMinutes
+// Logging:    log.file, log.bufferSize, log.overflow, log.maxBytes, log.rotateHours
+// Other:      compression.level, metrics.port, reconcile.enabled, reconcile.threads,
+//             reconcile.verifyHashes, reconcile.intervalHours, reconcile.quarantineDays
+public class ServerConfig {
+
+    private static final Properties fileSettings = loadFile();
+
+    private ServerConfig() {
+    }
+
+    // The configured value, or null if the key isn't set anywhere
+    public static String get(String key) {
+        String value = System.getProperty("fileflix." + key);
+        if (value == null) {
+            value = System.getenv("FILEFLIX_" + key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        }
+        if (value == null) {
+            value = fileSettings.getProperty(key);
+        }
+        return value != null ? value.trim() : null;
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    // Options for the listening socket; must be applied before it is bound so the receive
+    // buffer size can be negotiated for accepted connections
+    static void configure(ServerSocket serverSocket) throws IOException {
+        int receiveBuffer = getInt("socket.receiveBufferBytes", 0);
+        if (receiveBuffer > 0) {
+            serverSocket.setReceiveBufferSize(receiveBuffer);
+        }
+        // Lets a new server process bind the port while the old one drains
+        if (getBoolean("socket.reusePort", false)) {
+            if (serverSocket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            } else {
+                System.err.println("socket.reusePort is not supported on this platform");
+            }
+        }
+    }
+
+    static int backlog() {
+        return getInt("socket.backlog", 50);
+    }
+
+    // Options for each accepted client socket
+    static void configure(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(getBoolean("socket.tcpNoDelay", false));
+        int sendBuffer = getInt("socket.sendBufferBytes", 0);
+        if (sendBuffer > 0) {
+            socket.setSendBufferSize(sendBuffer);
+        }
+    }
+
+    private static Properties loadFile() {
+        Properties settings = new Properties();
+        String configured = System.getProperty("fileflix.config", System.getenv("FILEFLIX_CONFIG"));
+        Path file = Paths.get(configured != null ? configured : "fileflix.properties");
+        if (!Files.isRegularFile(file)) {
+            if (configured != null) {
+                System.err.println("Config file not found: " + file);
+            }
+            return settings;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            settings.load(in);
+            System.out.println("Loaded configuration from " + file);
+        } catch (IOException e) {
+            System.err.println("Error reading config file " + file + ": " + e.getMessage());
+        }
+        return settings;
+    }
+}
@@ -1,27 +1,259 @@
 package com.example.group7fileflixserver;
 
-import java.io.FileWriter;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 // log files for the server
+// Callers only enqueue the line; a single background thread batches the writes to one open
+// channel and rotates the file by size or age.
 public class ServerLogs {
 
-    private static final String LOG_FILE = "logging.txt";
+    private static final String LOG_FILE = ServerConfig.getString("log.file", "logging.txt");
+    private static final int BUFFER_SIZE = ServerConfig.getInt("log.bufferSize", 8192);
+    private static final long MAX_FILE_BYTES = ServerConfig.getLong("log.maxBytes", 10L * 1024 * 1024);
+    private static final long ROTATE_INTERVAL_MS = TimeUnit.HOURS.toMillis(ServerConfig.getLong("log.rotateHours", 24));
+    private static final OverflowPolicy OVERFLOW_POLICY = OverflowPolicy.fromProperty(ServerConfig.get("log.overflow"));
+    private static final int MAX_BATCH = 512;
+
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter ROTATED_SUFFIX =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+
+    private static final String SHUTDOWN = "<shutdown>";
+    private static final BlockingQueue<String> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private static final AtomicLong dropped = new AtomicLong();
+    // Held shared while enqueueing and exclusively to start shutdown, so no entry can land
+    // behind the SHUTDOWN marker
+    private static final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+    private static volatile boolean shutdown;
+    private static final Thread flusher = startFlusher();
+
+    // What log() does when the buffer is full
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK;
+
+        static OverflowPolicy fromProperty(String value) {
+            return "block".equalsIgnoreCase(value) ? BLOCK : DROP;
+        }
+    }
 
     // Method to log messages
     public static void log(String message) {
-        try (FileWriter fileWriter = new FileWriter(LOG_FILE, true);
-             PrintWriter printWriter = new PrintWriter(fileWriter)) {
+        // Format the log message with timestamp
+        String line = "[" + TIMESTAMP.format(Instant.now()) + "] " + message + System.lineSeparator();
+        shutdownLock.readLock().lock();
+        try {
+            if (!shutdown) {
+                enqueue(line);
+                return;
+            }
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        writeDirect(line);
+    }
+
+    private static void enqueue(String line) {
+        if (OVERFLOW_POLICY == OverflowPolicy.DROP) {
+            if (!buffer.offer(line)) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        try {
+            // Wait for room, but not on a flusher that has died
+            while (!buffer.offer(line, 1, TimeUnit.SECONDS)) {
+                if (!flusher.isAlive()) {
+                    writeDirect(line);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+        }
+    }
 
-            // Format the log message with timestamp
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-            printWriter.println("[" + timestamp + "] " + message);
+    // Write out everything still buffered and stop the flusher thread; called from the shutdown hook
+    public static void shutdown() {
+        shutdownLock.writeLock().lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        try {
+            buffer.put(SHUTDOWN);
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread startFlusher() {
+        Thread thread = new Thread(ServerLogs::flushLoop, "log-flusher");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
 
+    private static void flushLoop() {
+        LogFile file = new LogFile(Paths.get(LOG_FILE));
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        boolean running = true;
+        while (running) {
+            try {
+                String first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (batch.remove(SHUTDOWN)) {
+                // log() writes directly once shutdown is set, so this drains the last entries
+                running = false;
+                buffer.drainTo(batch);
+            }
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                batch.add("[" + TIMESTAMP.format(Instant.now()) + "] LOG_OVERFLOW: " + lost
+                        + " log entries dropped" + System.lineSeparator());
+            }
+            file.write(batch);
+            batch.clear();
+        }
+        file.close();
+    }
+
+    // Used after shutdown, once the flusher has written what was queued before it
+    private static synchronized void writeDirect(String line) {
+        try {
+            if (Thread.currentThread() != flusher && flusher.isAlive()) {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Files.writeString(Paths.get(LOG_FILE), line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
         } catch (IOException e) {
             System.err.println("Error writing to log file: " + e.getMessage());
         }
     }
+
+    // The open log channel, owned by the flusher thread
+    private static class LogFile {
+        private final Path path;
+        private FileChannel channel;
+        private long openedAt;
+
+        LogFile(Path path) {
+            this.path = path;
+        }
+
+        void write(List<String> lines) {
+            if (lines.isEmpty()) {
+                return;
+            }
+            StringBuilder text = new StringBuilder();
+            for (String line : lines) {
+                text.append(line);
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+            try {
+                rotateIfNeeded();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to log file: " + e.getMessage());
+                close();
+            }
+        }
+
+        private void rotateIfNeeded() throws IOException {
+            if (channel == null) {
+                open();
+            }
+            long age = System.currentTimeMillis() - openedAt;
+            if (channel.size() < MAX_FILE_BYTES && age < ROTATE_INTERVAL_MS) {
+                return;
+            }
+            close();
+            String name = path.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String base = (dot > 0 ? name.substring(0, dot) : name) + "-" + ROTATED_SUFFIX.format(Instant.now());
+            String extension = dot > 0 ? name.substring(dot) : "";
+            Path rotated = path.resolveSibling(base + extension);
+            for (int i = 1; Files.exists(rotated); i++) {
+                rotated = path.resolveSibling(base + "-" + i + extension);
+            }
+            Files.move(path, rotated);
+            open();
+        }
+
+        private void open() throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            // Age counts from the file's first entry, so restarts don't postpone rotation. File
+            // creation times can't be used: Linux often reports the last modification instead.
+            openedAt = channel.size() == 0 ? System.currentTimeMillis() : firstEntryTime();
+        }
+
+        private long firstEntryTime() throws IOException {
+            String first;
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                first = reader.readLine();
+            }
+            if (first != null && first.startsWith("[") && first.length() > 20 && first.charAt(20) == ']') {
+                try {
+                    return LocalDateTime.parse(first.substring(1, 20), TIMESTAMP)
+                            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    // Not one of our entries; treat the file as new
+                }
+            }
+            return System.currentTimeMillis();
+        }
+
+        void close() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing log file: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package com.example.group7fileflixserver;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and latency histograms for the running server, reported by the STATS command
+// and the optional Prometheus endpoint. Recording is a few atomic adds, safe on every request.
+public class ServerMetrics {
+
+    // Name recorded for commands the server doesn't handle, so junk input can't grow the map
+    public static final String UNKNOWN_COMMAND = "UNKNOWN";
+
+    private static final long startedAt = System.currentTimeMillis();
+    private static final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+    private static final LatencyHistogram dbQueries = new LatencyHistogram();
+    private static final LongAdder bytesReceived = new LongAdder();
+    private static final LongAdder bytesSent = new LongAdder();
+    private static final LongAdder connectionsAccepted = new LongAdder();
+    private static final AtomicInteger openConnections = new AtomicInteger();
+    private static final AtomicInteger commandsInFlight = new AtomicInteger();
+
+    private static class CommandStats {
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    public static void commandStarted() {
+        commandsInFlight.incrementAndGet();
+    }
+
+    // 'command' must be one the server dispatches, or UNKNOWN_COMMAND
+    public static void commandFinished(String command, long nanos, boolean failed) {
+        commandsInFlight.decrementAndGet();
+        CommandStats stats = commands.computeIfAbsent(command, key -> new CommandStats());
+        stats.latency.recordNanos(nanos);
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    public static void dbQuery(long nanos) {
+        dbQueries.recordNanos(nanos);
+    }
+
+    public static void bytesReceived(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    public static void bytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    public static void connectionOpened() {
+        connectionsAccepted.increment();
+        openConnections.incrementAndGet();
+    }
+
+    public static void connectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    public static int openConnections() {
+        return openConnections.get();
+    }
+
+    // Plain-text summary for the STATS command; latencies in milliseconds
+    public static String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "uptime_s=%d open_connections=%d accepted=%d in_flight=%d bytes_in=%d bytes_out=%d%n",
+                (System.currentTimeMillis() - startedAt) / 1000, openConnections.get(), connectionsAccepted.sum(),
+                commandsInFlight.get(), bytesReceived.sum(), bytesSent.sum()));
+        Runtime runtime = Runtime.getRuntime();
+        out.append(String.format(Locale.ROOT, "cpu_s=%.1f heap_used_mb=%d heap_max_mb=%d direct_mb=%d threads=%d%n",
+                cpuSeconds(), (runtime.totalMemory() - runtime.freeMemory()) >> 20, runtime.maxMemory() >> 20,
+                directBytes() >> 20, ManagementFactory.getThreadMXBean().getThreadCount()));
+        out.append(String.format(Locale.ROOT, "%-16s %9s %7s %9s %9s %9s %9s%n",
+                "command", "count", "errors", "p50_ms", "p99_ms", "p999_ms", "max_ms"));
+        for (Map.Entry<String, CommandStats> entry : new ConcurrentSkipListMap<>(commands).entrySet()) {
+            appendRow(out, entry.getKey(), entry.getValue().latency, entry.getValue().errors.sum());
+        }
+        appendRow(out, "db_query", dbQueries, 0);
+        return out.toString();
+    }
+
+    private static void appendRow(StringBuilder out, String name, LatencyHistogram histogram, long errors) {
+        out.append(String.format(Locale.ROOT, "%-16s %9d %7d %9.3f %9.3f %9.3f %9.3f%n", name, histogram.count(), errors,
+                histogram.percentileMicros(0.5) / 1000.0, histogram.percentileMicros(0.99) / 1000.0,
+                histogram.percentileMicros(0.999) / 1000.0, histogram.maxMicros() / 1000.0));
+    }
+
+    // Prometheus text exposition format
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder();
+        gauge(out, "fileflix_open_connections", "Client connections currently open", openConnections.get());
+        gauge(out, "fileflix_commands_in_flight", "Commands currently being handled", commandsInFlight.get());
+        counter(out, "fileflix_connections_accepted_total", "Client connections accepted", connectionsAccepted.sum());
+        counter(out, "fileflix_bytes_received_total", "File bytes received from clients", bytesReceived.sum());
+        counter(out, "fileflix_bytes_sent_total", "File bytes sent to clients", bytesSent.sum());
+        Runtime runtime = Runtime.getRuntime();
+        gauge(out, "fileflix_heap_used_bytes", "Java heap in use", runtime.totalMemory() - runtime.freeMemory());
+        gauge(out, "fileflix_direct_memory_bytes", "Off-heap buffers in use, including the content cache", directBytes());
+        gauge(out, "fileflix_threads", "Live platform threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        out.append(String.format(Locale.ROOT, "# HELP fileflix_process_cpu_seconds_total CPU time used by the server%n"
+                + "# TYPE fileflix_process_cpu_seconds_total counter%nfileflix_process_cpu_seconds_total %.3f%n", cpuSeconds()));
+
+        out.append("# HELP fileflix_command_errors_total Commands that ended in an error\n");
+        out.append("# TYPE fileflix_command_errors_total counter\n");
+        commands.forEach((name, stats) ->
+                out.append("fileflix_command_errors_total{command=\"").append(escapeLabel(name)).append("\"} ").append(stats.errors.sum()).append('\n'));
+
+        out.append("# HELP fileflix_command_duration_seconds Time to handle a command\n");
+        out.append("# TYPE fileflix_command_duration_seconds summary\n");
+        commands.forEach((name, stats) -> summary(out, "fileflix_command_duration_seconds", "command=\"" + escapeLabel(name) + "\",", stats.latency));
+
+        out.append("# HELP fileflix_db_query_duration_seconds Time spent in database calls\n");
+        out.append("# TYPE fileflix_db_query_duration_seconds summary\n");
+        summary(out, "fileflix_db_query_duration_seconds", "", dbQueries);
+        return out.toString();
+    }
+
+    // CPU time used by the whole process, or -1 where the platform doesn't report it
+    private static double cpuSeconds() {
+        return ProcessHandle.current().info().totalCpuDuration()
+                .map(cpu -> cpu.toNanos() / 1e9)
+                .orElse(-1.0);
+    }
+
+    private static long directBytes() {
+        long total = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                total += pool.getMemoryUsed();
+            }
+        }
+        return total;
+    }
+
+    // Label values escape backslash, double quote and line feed in the exposition format
+    static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.append(String.format(Locale.ROOT, "%s{%squantile=\"%s\"} %.6f%n", name, labels, quantile,
+                    histogram.percentileMicros(quantile) / 1e6));
+        }
+        String plainLabels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.append(String.format(Locale.ROOT, "%s_sum%s %.6f%n", name, plainLabels, histogram.totalMicros() / 1e6));
+        out.append(name).append("_count").append(plainLabels).append(' ').append(histogram.count()).append('\n');
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.group7fileflixserver;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Session tokens handed out after a successful LOGIN_SESSION. Commands can present the token
+// in place of the username, which costs a map lookup instead of another BCrypt check.
+public class SessionManager {
+
+    public static final String TOKEN_PREFIX = "fft_";
+    private static final long TTL_MS = TimeUnit.MINUTES.toMillis(ServerConfig.getLong("session.ttlMinutes", 60));
+    private static final int SWEEP_EVERY = 256;
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private static int issuedSinceSweep;
+
+    private record Session(String username, long expiresAt) {
+    }
+
+    public static boolean isToken(String value) {
+        return value != null && value.startsWith(TOKEN_PREFIX);
+    }
+
+    public static String issue(String username) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(username, System.currentTimeMillis() + TTL_MS));
+        sweepOccasionally();
+        return token;
+    }
+
+    // The user the token belongs to, or null if it is unknown or expired. Use extends the session.
+    public static String resolve(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.expiresAt() < now) {
+            sessions.remove(token);
+            return null;
+        }
+        sessions.replace(token, session, new Session(session.username(), now + TTL_MS));
+        return session.username();
+    }
+
+    public static void revoke(String token) {
+        sessions.remove(token);
+    }
+
+    private static void sweepOccasionally() {
+        synchronized (sessions) {
+            if (++issuedSinceSweep < SWEEP_EVERY) {
+                return;
+            }
+            issuedSinceSweep = 0;
+        }
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAt() < now);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.group7fileflixserver;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// The SQL differences between the supported metadata databases. SQLite is a file local to one
+// server; PostgreSQL is shared, so several FileFlix nodes can use the same users and files.
+public enum SqlDialect {
+    SQLITE("INTEGER PRIMARY KEY AUTOINCREMENT", "INTEGER", "LIKE", false),
+    POSTGRESQL("BIGSERIAL PRIMARY KEY", "BIGINT", "ILIKE", true);
+
+    final String idColumn;
+    final String integerType;
+    // Case-insensitive pattern match, as SQLite's LIKE is for ASCII
+    final String likeOperator;
+    // Other nodes write to a shared database, so per-node caches of its rows go stale
+    final boolean shared;
+
+    SqlDialect(String idColumn, String integerType, String likeOperator, boolean shared) {
+        this.idColumn = idColumn;
+        this.integerType = integerType;
+        this.likeOperator = likeOperator;
+        this.shared = shared;
+    }
+
+    public static SqlDialect fromUrl(String url) {
+        if (url.startsWith("jdbc:sqlite:")) {
+            return SQLITE;
+        }
+        if (url.startsWith("jdbc:postgresql:")) {
+            return POSTGRESQL;
+        }
+        throw new IllegalArgumentException("Unsupported database URL: " + url);
+    }
+
+    // Per-connection settings; SQLite needs WAL and a busy timeout for concurrent readers
+    void configure(Connection connection, boolean writer) throws SQLException {
+        if (this != SQLITE) {
+            if (!writer) {
+                connection.setReadOnly(true);
+            }
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            if (writer) {
+                stmt.execute("PRAGMA journal_mode=WAL;");
+                stmt.execute("PRAGMA synchronous=NORMAL;");
+            }
+            stmt.execute("PRAGMA busy_timeout=5000;");
+            if (!writer) {
+                stmt.execute("PRAGMA query_only=1;");
+            }
+        }
+    }
+}
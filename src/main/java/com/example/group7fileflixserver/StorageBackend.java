@@ -0,0 +1,31 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Where blob contents are kept. BlobStore receives and hashes uploads into a local staging file
+// and hands it to the backend; downloads are served from the local file the backend returns,
+// so sendfile, range requests and the content cache work the same for every backend.
+public interface StorageBackend {
+
+    void initialize() throws IOException;
+
+    boolean contains(String hash) throws IOException;
+
+    // Take ownership of a complete staged file holding the content for 'hash'
+    void store(String hash, Path staged) throws IOException;
+
+    // A local file with the content, fetched first if the backend is remote. The file does not
+    // exist if the blob isn't stored.
+    Path localPath(String hash) throws IOException;
+
+    // storage.backend selects the implementation: local (default) or s3
+    static StorageBackend create(Path uploadRoot) {
+        String backend = ServerConfig.getString("storage.backend", "local");
+        return switch (backend) {
+            case "local" -> new LocalStorageBackend(uploadRoot.resolve("blobs"));
+            case "s3" -> new S3StorageBackend(uploadRoot.resolve(".s3cache"));
+            default -> throw new IllegalArgumentException("Unknown storage backend: " + backend);
+        };
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Checks the upload directory against the database in the background, so a crash in the middle
+// of an upload can't leave the store inconsistent. Blobs are checked in parallel, shard by shard.
+// Blobs the database doesn't know, and blobs whose size or content don't match their record, are
+// moved to .quarantine; stale temp files are deleted; blob reference counts are recounted; and
+// files whose content is missing are reported. Anything modified since shortly before the scan
+// started is left for the next scan, so uploads in progress are never touched. Quarantined
+// files are deleted after reconcile.quarantineDays (0 keeps them), unless the blob they hold
+// is still referenced and could be restored.
+public class StorageReconciler {
+
+    private static final int PROGRESS_EVERY = 10000;
+
+    private final BlobStore blobStore;
+    private final ForkJoinPool workers;
+    private final boolean verifyHashes;
+    private final long intervalMillis;
+    private final long quarantineMillis;
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong bytesVerified = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+    private volatile Thread thread;
+
+    public StorageReconciler(BlobStore blobStore) {
+        this.blobStore = blobStore;
+        this.workers = new ForkJoinPool(ServerConfig.getInt("reconcile.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        this.verifyHashes = ServerConfig.getBoolean("reconcile.verifyHashes", true);
+        this.intervalMillis = TimeUnit.HOURS.toMillis(ServerConfig.getLong("reconcile.intervalHours", 0));
+        this.quarantineMillis = TimeUnit.DAYS.toMillis(ServerConfig.getLong("reconcile.quarantineDays", 30));
+    }
+
+    // Scan once now, then every intervalHours if set. Runs on a daemon thread so the server can
+    // accept connections while a large store is still being checked.
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> {
+            reconcile();
+            while (intervalMillis > 0) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                reconcile();
+            }
+        }, "storage-reconciler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        workers.shutdownNow();
+    }
+
+    void reconcile() {
+        // Files this recent may belong to an upload that hasn't saved its row yet
+        long cutoff = System.currentTimeMillis() - FileServer.CLIENT_TIMEOUT;
+        long startedAt = System.nanoTime();
+        checked.set(0);
+        bytesVerified.set(0);
+        quarantined.set(0);
+        log("RECONCILE: Storage scan started" + (verifyHashes ? " (verifying hashes)" : ""));
+
+        try {
+            int repaired = Database.repairBlobRefCounts();
+            if (repaired > 0) {
+                log("RECONCILE: Repaired reference counts of " + repaired + " blobs");
+            }
+            Map<String, Long> sizes = Database.blobSizes();
+            Set<String> referenced = Database.referencedBlobs();
+            Set<String> legacy = Database.legacyFilenames();
+
+            Set<String> missing = new HashSet<>();
+            if (blobStore.backend() instanceof LocalStorageBackend local) {
+                Set<String> present = ConcurrentHashMap.newKeySet();
+                workers.invoke(new ScanDirectory(this, local, local.directory(), sizes, present, cutoff));
+
+                missing.addAll(referenced);
+                missing.removeAll(present);
+                // Blobs skipped as too recent to judge aren't missing
+                missing.removeIf(local::contains);
+                for (String hash : missing) {
+                    log("RECONCILE: Content missing for blob " + hash + ", downloads of its files will be empty");
+                }
+            } else {
+                // A shared object store is checked by its own tooling, not by every node
+                log("RECONCILE: Blobs are in remote storage, skipping the blob scan");
+            }
+
+            cleanUploadDirectory(legacy, cutoff);
+            cleanIncoming(cutoff);
+            expireQuarantine(referenced);
+
+            log(String.format("RECONCILE: Storage scan finished in %d s: %d blobs checked, %d MB verified, %d quarantined, %d missing",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt), checked.get(),
+                    bytesVerified.get() / (1024 * 1024), quarantined.get(), missing.size()));
+        } catch (SQLException | IOException | RuntimeException e) {
+            log("RECONCILE: Storage scan failed: " + e.getMessage());
+        }
+    }
+
+    // One directory of the blob tree; subdirectories are forked as their own tasks
+    // RecursiveAction is Serializable, but a scan task never leaves this JVM
+    private static class ScanDirectory extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient StorageReconciler reconciler;
+        private final transient LocalStorageBackend local;
+        private final transient Path dir;
+        private final transient Map<String, Long> sizes;
+        private final transient Set<String> present;
+        private final long cutoff;
+
+        ScanDirectory(StorageReconciler reconciler, LocalStorageBackend local, Path dir, Map<String, Long> sizes,
+                      Set<String> present, long cutoff) {
+            this.reconciler = reconciler;
+            this.local = local;
+            this.dir = dir;
+            this.sizes = sizes;
+            this.present = present;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanDirectory> children = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry)) {
+                        children.add(new ScanDirectory(reconciler, local, entry, sizes, present, cutoff));
+                    } else {
+                        reconciler.checkBlob(local, entry, sizes, present, cutoff);
+                    }
+                }
+            } catch (IOException e) {
+                log("RECONCILE: Could not read " + dir + ": " + e.getMessage());
+            }
+            invokeAll(children);
+        }
+    }
+
+    private void checkBlob(LocalStorageBackend local, Path file, Map<String, Long> sizes, Set<String> present, long cutoff) {
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                return;
+            }
+            String name = file.getFileName().toString();
+            Long expectedSize = sizes.get(name);
+            long size = Files.size(file);
+            if (expectedSize == null || size != expectedSize) {
+                // The snapshot was read before the scan; an upload may have recorded the blob since
+                long recorded = BlobStore.isValidHash(name) ? Database.lookupBlobSize(name) : -1;
+                expectedSize = recorded < 0 ? null : recorded;
+            }
+            String problem = null;
+            if (!BlobStore.isValidHash(name) || !file.equals(local.pathFor(name))) {
+                problem = "unexpected file";
+            } else if (expectedSize == null) {
+                problem = "not in database";
+            } else if (size != expectedSize) {
+                problem = "size " + size + " instead of " + expectedSize;
+            } else if (verifyHashes) {
+                bytesVerified.addAndGet(expectedSize);
+                if (!name.equals(BlobStore.hash(file))) {
+                    problem = "content does not match hash";
+                }
+            }
+
+            if (problem == null) {
+                present.add(name);
+            } else {
+                Path moved = blobStore.quarantine(file);
+                quarantined.incrementAndGet();
+                log("RECONCILE: Quarantined " + file + " (" + problem + ") to " + moved);
+            }
+        } catch (IOException | SQLException e) {
+            log("RECONCILE: Could not check " + file + ": " + e.getMessage());
+        }
+
+        long count = checked.incrementAndGet();
+        if (count % PROGRESS_EVERY == 0) {
+            log(String.format("RECONCILE: %d blobs checked, %d MB verified, %d quarantined",
+                    count, bytesVerified.get() / (1024 * 1024), quarantined.get()));
+        }
+    }
+
+    // Files directly in the upload directory predate the blob store. Those no record points at
+    // are leftovers of interrupted uploads from that time.
+    private void cleanUploadDirectory(Set<String> legacy, long cutoff) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(blobStore.root())) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry) && !legacy.contains(entry.getFileName().toString())
+                        && Files.getLastModifiedTime(entry).toMillis() <= cutoff) {
+                    Path moved = blobStore.quarantine(entry);
+                    quarantined.incrementAndGet();
+                    log("RECONCILE: Quarantined " + entry + " (no file record) to " + moved);
+                }
+            }
+        }
+    }
+
+    // Temp files of uploads that never finished
+    private void cleanIncoming(long cutoff) throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(blobStore.incomingDirectory())) {
+            for (Path entry : entries) {
+                if (Files.getLastModifiedTime(entry).toMillis() <= cutoff && Files.deleteIfExists(entry)) {
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log("RECONCILE: Deleted " + deleted + " abandoned upload temp files");
+        }
+    }
+
+    // Quarantined files past their retention. A referenced blob is kept: its files are reported
+    // as missing and it may be the copy to restore. Names of repeated quarantines end in .n.
+    private void expireQuarantine(Set<String> referenced) throws IOException {
+        Path dir = blobStore.quarantineDirectory();
+        if (quarantineMillis <= 0 || !Files.isDirectory(dir)) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() - quarantineMillis;
+        List<Path> expired = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                String hash = dot < 0 ? name : name.substring(0, dot);
+                if (Files.isRegularFile(file) && !referenced.contains(hash)
+                        && Files.getLastModifiedTime(file).toMillis() <= expiry) {
+                    expired.add(file);
+                }
+            }
+        }
+        int deleted = 0;
+        for (Path file : expired) {
+            if (Files.deleteIfExists(file)) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            log("RECONCILE: Deleted " + deleted + " quarantined files older than "
+                    + TimeUnit.MILLISECONDS.toDays(quarantineMillis) + " days");
+        }
+    }
+
+    private static void log(String message) {
+        System.out.println(message);
+        ServerLogs.log(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ThreadFactory;
+
+// Blocking accept loop with one thread per client. With a virtual thread factory an idle
+// client costs a few hundred bytes of heap instead of a full platform thread stack.
+// Accepting through a channel gives each client socket a SocketChannel, so downloads can
+// use sendfile; the socket is still used through its blocking streams.
+public class ThreadedConnectionEngine implements ConnectionEngine {
+
+    private final ThreadFactory threadFactory;
+    private ServerSocketChannel serverChannel;
+
+    public ThreadedConnectionEngine(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        ServerConfig.configure(serverChannel.socket());
+        serverChannel.bind(new InetSocketAddress(port), ServerConfig.backlog());
+    }
+
+    @Override
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void serve() throws IOException {
+        while (serverChannel.isOpen()) {
+            Socket clientSocket;
+            try {
+                clientSocket = serverChannel.accept().socket();
+            } catch (ClosedChannelException e) {
+                // Also thrown as AsynchronousCloseException when closed while blocked in accept
+                return;
+            }
+            FileServer.connectionOpened(clientSocket);
+            threadFactory.newThread(new FileServer.ClientHandler(clientSocket)).start();
+        }
+    }
+
+    @Override
+    public void stopAccepting() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+}
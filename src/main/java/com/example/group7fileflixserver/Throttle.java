@@ -0,0 +1,74 @@
+package com.example.group7fileflixserver;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+// The token buckets one transfer is charged against: its connection, its user and the whole
+// server. Copy loops acquire in slices so waiting transfers interleave. A transfer no bigger than
+// one slice is only debited from the buckets, never made to wait, so small requests don't queue
+// behind bulk transfers; the bulk transfers pay the debt.
+public class Throttle {
+
+    static final int SLICE_BYTES = 64 * 1024;
+    public static final Throttle NONE = new Throttle(List.of(), null, false);
+
+    private final List<TokenBucket> buckets;
+    private final TokenBucket server;
+    private final boolean small;
+
+    Throttle(List<TokenBucket> buckets, TokenBucket server, boolean small) {
+        this.buckets = buckets;
+        this.server = server;
+        this.small = small;
+    }
+
+    public boolean isUnlimited() {
+        return buckets.isEmpty() && server == null;
+    }
+
+    public void acquire(long bytes) throws InterruptedIOException {
+        for (TokenBucket bucket : buckets) {
+            charge(bucket, bytes);
+        }
+        if (server != null) {
+            charge(server, bytes);
+        }
+    }
+
+    private void charge(TokenBucket bucket, long bytes) throws InterruptedIOException {
+        if (small) {
+            bucket.debit(bytes);
+        } else {
+            bucket.acquire(bytes);
+        }
+    }
+
+    // Charge everything read through the stream
+    public InputStream wrap(InputStream in) {
+        if (isUnlimited()) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    acquire(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] data, int offset, int length) throws IOException {
+                int read = super.read(data, offset, Math.min(length, SLICE_BYTES));
+                if (read > 0) {
+                    acquire(read);
+                }
+                return read;
+            }
+        };
+    }
+}
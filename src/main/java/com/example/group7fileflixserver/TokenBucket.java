@@ -0,0 +1,71 @@
+package com.example.group7fileflixserver;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Byte-rate limiter: holds up to one second of tokens and makes callers wait once they run out.
+// A caller takes its tokens under the lock, letting the balance go negative, and then sleeps
+// off its share of the debt outside it. Each waiter sleeps past the debt of those before it, so
+// transfers sharing a bucket take turns slice by slice, and debit() never waits behind a sleeper.
+public class TokenBucket {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long bytesPerSecond;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    // A rate of 0 or less means unlimited
+    public TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = Math.max(bytesPerSecond, 0);
+    }
+
+    public void setRate(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public boolean isLimited() {
+        return bytesPerSecond > 0;
+    }
+
+    // Take the tokens for 'bytes', waiting until the bucket has refilled enough to cover them
+    public void acquire(long bytes) throws InterruptedIOException {
+        take(bytes, true);
+    }
+
+    // Take the tokens without waiting; the debt is paid by whoever acquires next
+    public void debit(long bytes) {
+        try {
+            take(bytes, false);
+        } catch (InterruptedIOException e) {
+            // Can't happen without waiting
+        }
+    }
+
+    private void take(long bytes, boolean wait) throws InterruptedIOException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            return;
+        }
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - refilledAt) * (rate / 1e9));
+            refilledAt = now;
+            tokens -= bytes;
+            waitNanos = tokens < 0 ? (long) (-tokens * 1e9 / rate) : 0;
+        } finally {
+            lock.unlock();
+        }
+        if (wait && waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+}
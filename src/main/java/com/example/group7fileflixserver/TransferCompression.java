@@ -0,0 +1,182 @@
+package com.example.group7fileflixserver;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// On-the-wire compression for UPLOAD_Z and RETRIEVE_Z. The client lists the codecs it can
+// decode and the server picks one per transfer. Compressed bodies are sent as chunks of
+// (int length, bytes) ending with a zero length, because the compressed size isn't known
+// until the whole file has gone through the compressor.
+public class TransferCompression {
+
+    public static final String IDENTITY = "identity";
+    public static final String DEFLATE = "deflate";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK = 1024 * 1024;
+    private static final int LEVEL = ServerConfig.getInt("compression.level", Deflater.BEST_SPEED);
+    // Media and archives are already compressed; deflating them again only costs CPU
+    private static final Set<String> INCOMPRESSIBLE = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "mp3", "aac", "ogg", "flac", "mp4", "m4v", "mkv",
+            "mov", "avi", "webm", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "jar", "docx", "xlsx", "pptx");
+
+    private TransferCompression() {
+    }
+
+    // Codec for a download: deflate if the client accepts it and the file is worth compressing
+    public static String choose(String offered, String filename) {
+        boolean acceptsDeflate = Arrays.stream(offered.split(","))
+                .map(codec -> codec.trim().toLowerCase(Locale.ROOT))
+                .anyMatch(DEFLATE::equals);
+        return acceptsDeflate && isCompressible(filename) ? DEFLATE : IDENTITY;
+    }
+
+    public static boolean isSupported(String codec) {
+        return IDENTITY.equals(codec) || DEFLATE.equals(codec);
+    }
+
+    public static boolean isCompressible(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 || !INCOMPRESSIBLE.contains(filename.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Deflate the file into chunks on 'out'; returns the number of bytes put on the wire
+    public static long sendDeflated(File file, DataOutputStream out, Throttle throttle) throws IOException {
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out, throttle);
+        Deflater deflater = new Deflater(LEVEL);
+        try {
+            DeflaterOutputStream deflating = new DeflaterOutputStream(chunks, deflater, CHUNK_SIZE);
+            Files.copy(file.toPath(), deflating);
+            deflating.finish();
+            chunks.end();
+            return chunks.bytesWritten();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Writes each buffer as one (length, bytes) chunk; end() writes the zero-length terminator
+    static class ChunkedOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final Throttle throttle;
+        private long bytesWritten;
+
+        ChunkedOutputStream(DataOutputStream out, Throttle throttle) {
+            this.out = out;
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            out.writeInt(length);
+            out.write(data, offset, length);
+            bytesWritten += 4 + length;
+            throttle.acquire(4 + length);
+        }
+
+        void end() throws IOException {
+            out.writeInt(0);
+            out.flush();
+            bytesWritten += 4;
+        }
+
+        long bytesWritten() {
+            return bytesWritten;
+        }
+
+        // The underlying connection stays open
+        @Override
+        public void close() {
+        }
+    }
+
+    // Reads the chunk framing back; returns end of stream at the zero-length terminator
+    static class ChunkedInputStream extends InputStream {
+        private final DataInputStream in;
+        private int remainingInChunk;
+        private boolean ended;
+        private long bytesRead;
+
+        ChunkedInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int count = in.read(buffer, offset, Math.min(length, remainingInChunk));
+            if (count == -1) {
+                throw new EOFException("Connection closed inside a compressed chunk");
+            }
+            remainingInChunk -= count;
+            bytesRead += count;
+            return count;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (remainingInChunk == 0) {
+                if (ended) {
+                    return false;
+                }
+                int length = in.readInt();
+                bytesRead += 4;
+                if (length < 0 || length > MAX_CHUNK) {
+                    throw new IOException("Invalid compressed chunk length " + length);
+                }
+                if (length == 0) {
+                    ended = true;
+                    return false;
+                }
+                remainingInChunk = length;
+            }
+            return true;
+        }
+
+        // Consume whatever is left up to and including the terminator
+        void skipToEnd() throws IOException {
+            byte[] scratch = new byte[8192];
+            while (read(scratch, 0, scratch.length) != -1) {
+                // discard
+            }
+        }
+
+        long bytesRead() {
+            return bytesRead;
+        }
+
+        // The underlying connection stays open
+        @Override
+        public void close() {
+        }
+    }
+}
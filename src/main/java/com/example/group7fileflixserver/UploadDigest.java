@@ -0,0 +1,49 @@
+package com.example.group7fileflixserver;
+
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+// A digest a client sends with UPLOAD_VERIFIED, written as "sha256:<64 hex digits>" or
+// "crc32c:<8 hex digits>" over the uncompressed content. SHA-256 is compared with the hash
+// BlobStore computes anyway; CRC32C is computed in the same copy loop, so neither costs an
+// extra pass over the data.
+public record UploadDigest(String algorithm, String value) {
+
+    // Returns null if the digest is malformed or uses an unknown algorithm
+    public static UploadDigest parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            return null;
+        }
+        String algorithm = spec.substring(0, colon).toLowerCase(Locale.ROOT);
+        String value = spec.substring(colon + 1).toLowerCase(Locale.ROOT);
+        int length = switch (algorithm) {
+            case "sha256" -> 64;
+            case "crc32c" -> 8;
+            default -> -1;
+        };
+        if (value.length() != length || !value.chars().allMatch(HexFormat::isHexDigit)) {
+            return null;
+        }
+        return new UploadDigest(algorithm, value);
+    }
+
+    // The checksum to update while receiving, or null if the blob hash is enough
+    public Checksum newChecksum() {
+        return "crc32c".equals(algorithm) ? new CRC32C() : null;
+    }
+
+    public boolean matches(BlobStore.IncomingBlob blob, Checksum checksum) {
+        if ("sha256".equals(algorithm)) {
+            return value.equals(blob.hash());
+        }
+        return checksum != null && value.equals(String.format("%08x", checksum.getValue()));
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + ":" + value;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Chunked, resumable uploads. Chunks are written at their offset in a sparse
+// .part file, so they can arrive in any order and over several connections; the
+// finished file is hashed and renamed into the blob store.
+public class UploadSessionManager {
+
+    public static final int MIN_CHUNK_SIZE = 64 * 1024;
+    public static final int MAX_CHUNK_SIZE = 8 * 1024 * 1024;
+    // Largest file a session accepts; the received-chunk bitmap grows with the chunk count
+    public static final long MAX_FILE_BYTES = ServerConfig.getLong("upload.maxFileBytes", 1L << 40);
+    private static final long SESSION_TTL_MS = TimeUnit.MINUTES.toMillis(ServerConfig.getLong("upload.sessionTtlMinutes", 24 * 60));
+    private static final long SWEEP_INTERVAL_MINUTES = 10;
+
+    private final Path partialDir;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    public UploadSessionManager(Path partialDir) {
+        this.partialDir = partialDir;
+    }
+
+    // Remove partial files left by a previous run and start the abandoned-session sweeper
+    public synchronized void start() throws IOException {
+        if (sweeper != null) {
+            return;
+        }
+        Files.createDirectories(partialDir);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(partialDir, "*.part")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+                ServerLogs.log("UPLOAD_CLEANUP: Removed partial upload from previous run: " + leftover.getFileName());
+            }
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("upload-sweeper").daemon(true).factory());
+        sweeper.scheduleAtFixedRate(this::removeAbandoned, SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        sessions.values().forEach(UploadSession::closeChannel);
+    }
+
+    public static int chunkSizeFor(int requested) {
+        return Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, requested));
+    }
+
+    // Whether a session can be opened for a file of this size with the requested chunk size
+    public static boolean acceptsSize(long fileSize, int requestedChunkSize) {
+        return fileSize >= 0 && fileSize <= MAX_FILE_BYTES
+                && fileSize <= (long) chunkSizeFor(requestedChunkSize) * Integer.MAX_VALUE;
+    }
+
+    // Start a session, or return the unfinished one for the same file so the client can resume
+    public UploadSession open(String username, String filename, long fileSize, int chunkSize) throws IOException {
+        for (UploadSession session : sessions.values()) {
+            if (session.username.equals(username) && session.filename.equals(filename) && session.fileSize == fileSize) {
+                session.touch();
+                return session;
+            }
+        }
+        if (!acceptsSize(fileSize, chunkSize)) {
+            throw new IllegalArgumentException("Unsupported upload size: " + fileSize);
+        }
+        int size = chunkSizeFor(chunkSize);
+        String id = UUID.randomUUID().toString();
+        UploadSession session = new UploadSession(id, username, filename, fileSize, size, partialDir.resolve(id + ".part"));
+        sessions.put(id, session);
+        ServerLogs.log(String.format("UPLOAD_SESSION: %s started for %s/%s (%d bytes, %d chunks)",
+                id, username, filename, fileSize, session.chunkCount));
+        return session;
+    }
+
+    public UploadSession get(String id) {
+        UploadSession session = sessions.get(id);
+        if (session != null) {
+            session.touch();
+        }
+        return session;
+    }
+
+    // Forget a session once its file has been moved into the blob store (or given up on)
+    public void finish(UploadSession session) {
+        sessions.remove(session.id);
+        session.closeChannel();
+    }
+
+    public void abandon(UploadSession session) {
+        finish(session);
+        try {
+            Files.deleteIfExists(session.partFile);
+        } catch (IOException e) {
+            System.err.println("Error deleting partial upload: " + e.getMessage());
+        }
+    }
+
+    private void removeAbandoned() {
+        long now = System.currentTimeMillis();
+        for (UploadSession session : sessions.values()) {
+            if (now - session.lastTouched > SESSION_TTL_MS) {
+                abandon(session);
+                ServerLogs.log("UPLOAD_CLEANUP: Abandoned upload session " + session.id + " for "
+                        + session.username + "/" + session.filename);
+            }
+        }
+    }
+
+    public static class UploadSession {
+        private final String id;
+        private final String username;
+        private final String filename;
+        private final long fileSize;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final Path partFile;
+        private final BitSet received;
+        private FileChannel channel;
+        private volatile long lastTouched = System.currentTimeMillis();
+
+        UploadSession(String id, String username, String filename, long fileSize, int chunkSize, Path partFile) {
+            this.id = id;
+            this.username = username;
+            this.filename = filename;
+            this.fileSize = fileSize;
+            this.chunkSize = chunkSize;
+            this.chunkCount = Math.toIntExact(Math.max(1, (fileSize + chunkSize - 1) / chunkSize));
+            this.partFile = partFile;
+            this.received = new BitSet(chunkCount);
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public String username() {
+            return username;
+        }
+
+        public String filename() {
+            return filename;
+        }
+
+        public long fileSize() {
+            return fileSize;
+        }
+
+        public int chunkSize() {
+            return chunkSize;
+        }
+
+        public int chunkCount() {
+            return chunkCount;
+        }
+
+        public Path partFile() {
+            return partFile;
+        }
+
+        // Expected length of a chunk; only the last one may be short
+        public int chunkLength(int index) {
+            long start = (long) index * chunkSize;
+            return (int) Math.min(chunkSize, fileSize - start);
+        }
+
+        public boolean isValidChunk(int index, int length) {
+            return index >= 0 && index < chunkCount && length == chunkLength(index);
+        }
+
+        public void writeChunk(int index, ByteBuffer data) throws IOException {
+            long position = (long) index * chunkSize;
+            FileChannel out = channel();
+            while (data.hasRemaining()) {
+                position += out.write(data, position);
+            }
+            synchronized (received) {
+                received.set(index);
+            }
+        }
+
+        public List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            synchronized (received) {
+                for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+                    missing.add(i);
+                }
+            }
+            return missing;
+        }
+
+        // Flush the data to disk and release the file so it can be renamed
+        public void seal() throws IOException {
+            FileChannel out = channel();
+            out.truncate(fileSize);
+            out.force(true);
+            closeChannel();
+        }
+
+        private synchronized FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        private synchronized void closeChannel() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing partial upload: " + e.getMessage());
+            }
+            channel = null;
+        }
+
+        private void touch() {
+            lastTouched = System.currentTimeMillis();
+        }
+    }
+}
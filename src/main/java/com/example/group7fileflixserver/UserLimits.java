@@ -0,0 +1,128 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Storage quotas and bandwidth limits, read from a properties file that is re-read when it
+// changes, so limits can be adjusted without a restart. All limits default to 0 (unlimited).
+//
+//   quotaBytes, uploadBytesPerSecond, downloadBytesPerSecond    defaults for every user
+//   user.<name>.quotaBytes (etc.)                                 per-user overrides
+//   connection.uploadBytesPerSecond, connection.downloadBytesPerSecond
+//   server.uploadBytesPerSecond, server.downloadBytesPerSecond    shared by all clients
+public class UserLimits {
+
+    private static final Path LIMITS_FILE = Paths.get(ServerConfig.getString("limits.file", "limits.properties"));
+    private static final long RELOAD_CHECK_MS = ServerConfig.getLong("limits.reloadSeconds", 10) * 1000;
+
+    private static volatile Properties limits = new Properties();
+    private static volatile long checkedAt;
+    private static long loadedModified = -1;
+
+    private static final TokenBucket serverUploads = new TokenBucket(0);
+    private static final TokenBucket serverDownloads = new TokenBucket(0);
+    // Only users with a rate limit get a bucket
+    private static final Map<String, TokenBucket> userUploads = new ConcurrentHashMap<>();
+    private static final Map<String, TokenBucket> userDownloads = new ConcurrentHashMap<>();
+
+    private UserLimits() {
+    }
+
+    // 0 means no quota
+    public static long quotaBytes(String username) {
+        refresh();
+        return limit(username, "quotaBytes");
+    }
+
+    public static Throttle uploads(String username, TokenBucket connection, long transferBytes) {
+        return throttle(username, connection, transferBytes, "uploadBytesPerSecond", userUploads, serverUploads);
+    }
+
+    public static Throttle downloads(String username, TokenBucket connection, long transferBytes) {
+        return throttle(username, connection, transferBytes, "downloadBytesPerSecond", userDownloads, serverDownloads);
+    }
+
+    private static Throttle throttle(String username, TokenBucket connection, long transferBytes, String key,
+                                     Map<String, TokenBucket> users, TokenBucket server) {
+        refresh();
+        List<TokenBucket> buckets = new ArrayList<>(2);
+        connection.setRate(limit(null, "connection." + key));
+        if (connection.isLimited()) {
+            buckets.add(connection);
+        }
+        long userRate = limit(username, key);
+        if (userRate > 0) {
+            buckets.add(users.computeIfAbsent(username, u -> new TokenBucket(userRate)));
+        }
+        if (buckets.isEmpty() && !server.isLimited()) {
+            return Throttle.NONE;
+        }
+        return new Throttle(buckets, server.isLimited() ? server : null, transferBytes <= Throttle.SLICE_BYTES);
+    }
+
+    private static long limit(String username, String key) {
+        Properties current = limits;
+        String value = username != null ? current.getProperty("user." + username + "." + key) : null;
+        if (value == null) {
+            value = current.getProperty(key);
+        }
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Re-read the file at most every RELOAD_CHECK_MS, and only if it has changed
+    private static void refresh() {
+        long now = System.currentTimeMillis();
+        if (now - checkedAt < RELOAD_CHECK_MS) {
+            return;
+        }
+        synchronized (UserLimits.class) {
+            if (now - checkedAt < RELOAD_CHECK_MS) {
+                return;
+            }
+            checkedAt = now;
+            try {
+                long modified = Files.exists(LIMITS_FILE) ? Files.getLastModifiedTime(LIMITS_FILE).toMillis() : 0;
+                if (modified == loadedModified) {
+                    return;
+                }
+                Properties loaded = new Properties();
+                if (modified != 0) {
+                    try (InputStream in = Files.newInputStream(LIMITS_FILE)) {
+                        loaded.load(in);
+                    }
+                }
+                limits = loaded;
+                loadedModified = modified;
+                applyRates();
+                if (modified != 0) {
+                    System.out.println("Limits loaded from " + LIMITS_FILE);
+                    ServerLogs.log("LIMITS_LOADED: " + LIMITS_FILE + " (" + loaded.size() + " settings)");
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading limits file " + LIMITS_FILE + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void applyRates() {
+        serverUploads.setRate(limit(null, "server.uploadBytesPerSecond"));
+        serverDownloads.setRate(limit(null, "server.downloadBytesPerSecond"));
+        userUploads.forEach((user, bucket) -> bucket.setRate(limit(user, "uploadBytesPerSecond")));
+        userDownloads.forEach((user, bucket) -> bucket.setRate(limit(user, "downloadBytesPerSecond")));
+    }
+}
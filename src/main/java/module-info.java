@@ -5,6 +5,9 @@ module com.example.group7fileflixserver {
     requires org.controlsfx.controls;
     requires com.dlsc.formsfx;
     requires java.sql;
+    requires java.management;
+    requires java.net.http;
+    requires jdk.httpserver;
     requires jbcrypt;
 
     opens com.example.group7fileflixserver to javafx.fxml;
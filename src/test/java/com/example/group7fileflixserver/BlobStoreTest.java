@@ -0,0 +1,85 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobStoreTest {
+
+    private static final FileTime LONG_AGO = FileTime.from(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1),
+            TimeUnit.MILLISECONDS);
+
+    private BlobStore store;
+    private LocalStorageBackend backend;
+
+    @BeforeEach
+    void createStore() throws IOException {
+        Path root = Files.createTempDirectory(TestServer.workspace(), "blobs");
+        backend = new LocalStorageBackend(root.resolve("blobs"));
+        store = new BlobStore(root, backend, null);
+        store.initialize();
+    }
+
+    // A chunked upload's file is assembled long before it's committed; the reconciler must not
+    // see the committed blob as old
+    @Test
+    void commitMarksTheBlobAsRecent() throws IOException {
+        BlobStore.IncomingBlob blob = receive("assembled chunks");
+        Files.setLastModifiedTime(blob.temp(), LONG_AGO);
+
+        store.commit(blob);
+        assertRecent(backend.pathFor(blob.hash()));
+    }
+
+    @Test
+    void duplicateCommitMarksTheExistingBlobAsRecent() throws IOException {
+        BlobStore.IncomingBlob first = receive("same content");
+        store.commit(first);
+        Files.setLastModifiedTime(backend.pathFor(first.hash()), LONG_AGO);
+
+        store.commit(receive("same content"));
+        assertRecent(backend.pathFor(first.hash()));
+    }
+
+    // A client that disconnects early must not leave a short blob to be committed
+    @Test
+    void truncatedUploadIsRejectedAndCleanedUp() throws IOException {
+        byte[] bytes = "only part of the upload".getBytes();
+        assertThrows(EOFException.class, () -> store.receive(new ByteArrayInputStream(bytes), bytes.length + 100));
+        try (Stream<Path> left = Files.list(store.incomingDirectory())) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void receiveUpdatesTheChecksum() throws IOException {
+        byte[] bytes = "123456789".getBytes();
+        CRC32C checksum = new CRC32C();
+        BlobStore.IncomingBlob blob = store.receive(new ByteArrayInputStream(bytes), bytes.length, checksum);
+        assertEquals(0xe3069283L, checksum.getValue());
+        assertEquals(bytes.length, blob.size());
+    }
+
+    private BlobStore.IncomingBlob receive(String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        return store.receive(new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static void assertRecent(Path file) throws IOException {
+        long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+        assertTrue(age < TimeUnit.MINUTES.toMillis(1), file + " was modified " + age + " ms ago");
+    }
+}
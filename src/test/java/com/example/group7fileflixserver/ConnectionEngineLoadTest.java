@@ -0,0 +1,183 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Load test for the connection engines: holds many heartbeat clients against an in-process
+// server and measures what each engine pays for them: connections held, platform threads, and
+// heap used after GC per connection. The clients share one selector thread so they add little
+// to the measurement, though their own channels are counted in the heap figure. The figures
+// are printed to stderr; run with -Dfileflix.test.loadConnections=N to measure other sizes.
+class ConnectionEngineLoadTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("fileflix.test.loadConnections", 500);
+    private static final int ROUNDS = 3;
+    // Generous: the engines measured 2.5 to 10 KB per connection
+    private static final long MAX_HEAP_PER_CONNECTION = 64 * 1024;
+    private static final ByteBuffer HEARTBEAT = encodeUtf("HEARTBEAT");
+    private static final int ACK_LENGTH = encodeUtf("HEARTBEAT_ACK").remaining();
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    @Test
+    void platformEngineServesEveryConnection() throws Exception {
+        Measurement measured = probe(EngineMode.PLATFORM);
+        // One platform thread per connection is the cost the other engines avoid
+        assertTrue(measured.threadsAdded() >= CONNECTIONS * 9 / 10, measured.toString());
+    }
+
+    @Test
+    void virtualEngineHoldsConnectionsWithoutPlatformThreads() throws Exception {
+        Measurement measured = probe(EngineMode.VIRTUAL);
+        assertTrue(measured.threadsAdded() < CONNECTIONS / 10, measured.toString());
+    }
+
+    @Test
+    void nioEngineHoldsConnectionsWithoutPlatformThreads() throws Exception {
+        Measurement measured = probe(EngineMode.NIO);
+        assertTrue(measured.threadsAdded() < CONNECTIONS / 10, measured.toString());
+    }
+
+    record Measurement(EngineMode mode, int held, int threadsAdded, long heapPerConnection, double roundMillis) {
+        @Override
+        public String toString() {
+            return String.format("%s: %d connections held, %d platform threads added, %d heap bytes per connection, "
+                    + "%.2f ms per heartbeat round", mode, held, threadsAdded, heapPerConnection, roundMillis);
+        }
+    }
+
+    // Holds CONNECTIONS clients and heartbeats them all ROUNDS times while measuring the engine
+    private static Measurement probe(EngineMode mode) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        try (ConnectionEngine engine = TestServer.start(mode); Selector selector = Selector.open()) {
+            int threadsBefore = threads.getThreadCount();
+            int openBefore = ServerMetrics.openConnections();
+            List<SocketChannel> clients = new ArrayList<>();
+            int threadsAdded;
+            long heapHeld;
+            double roundMillis;
+            String stopped = null;
+            try {
+                try {
+                    for (int i = 0; i < CONNECTIONS; i++) {
+                        SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", engine.getLocalPort()));
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(ACK_LENGTH));
+                        clients.add(channel);
+                    }
+                } catch (IOException e) {
+                    stopped = e.toString();
+                }
+                assertEquals(CONNECTIONS, clients.size(), mode + " stopped opening connections: " + stopped);
+                long roundTotal = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long started = System.nanoTime();
+                    assertEquals(clients.size(), heartbeatAll(clients, selector), mode + " round " + round);
+                    roundTotal += System.nanoTime() - started;
+                }
+                roundMillis = roundTotal / 1e6 / ROUNDS;
+                threadsAdded = threads.getThreadCount() - threadsBefore;
+                heapHeld = usedHeapAfterGc(memory);
+            } finally {
+                for (SocketChannel channel : clients) {
+                    channel.close();
+                }
+                // Closed channels stay registered until the selector next selects
+                selector.selectNow();
+            }
+
+            // The heap a connection costs is what closing it gives back, once the server has let
+            // go of every one. Measured against the same engine, so garbage left by earlier tests
+            // doesn't count.
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (ServerMetrics.openConnections() > openBefore && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            long heapPerConnection = (heapHeld - usedHeapAfterGc(memory)) / clients.size();
+            Measurement measured = new Measurement(mode, clients.size(), threadsAdded, heapPerConnection, roundMillis);
+            System.err.println("Engine load: " + measured);
+            assertTrue(heapPerConnection > 0 && heapPerConnection < MAX_HEAP_PER_CONNECTION, measured.toString());
+            return measured;
+        }
+    }
+
+    // Closed connections are let go of over a few hundred milliseconds (handler threads exiting,
+    // Cleaners closing sockets); collect until the used heap has stopped shrinking twice in a row
+    private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        int steady = 0;
+        for (int i = 0; i < 20 && steady < 2; i++) {
+            System.gc();
+            Thread.sleep(250);
+            long now = memory.getHeapMemoryUsage().getUsed();
+            steady = now >= used - 16 * 1024 ? steady + 1 : 0;
+            used = Math.min(used, now);
+        }
+        return used;
+    }
+
+    // Send a heartbeat on every connection; returns how many were acknowledged
+    private static int heartbeatAll(List<SocketChannel> clients, Selector selector) throws IOException {
+        for (SocketChannel channel : clients) {
+            ByteBuffer request = HEARTBEAT.duplicate();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+        }
+        int acknowledged = 0;
+        while (acknowledged < clients.size()) {
+            if (selector.select(10_000) == 0) {
+                break;
+            }
+            for (SelectionKey key : selector.selectedKeys()) {
+                ByteBuffer ack = (ByteBuffer) key.attachment();
+                if (((SocketChannel) key.channel()).read(ack) < 0) {
+                    throw new IOException("Server closed a probe connection");
+                }
+                if (!ack.hasRemaining()) {
+                    ack.flip();
+                    assertEquals("HEARTBEAT_ACK", decodeUtf(ack));
+                    ack.clear();
+                    acknowledged++;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        return acknowledged;
+    }
+
+    // Same encoding as DataOutputStream.writeUTF for ASCII commands
+    private static ByteBuffer encodeUtf(String command) {
+        byte[] bytes = command.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + bytes.length);
+        buffer.putShort((short) bytes.length).put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static String decodeUtf(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
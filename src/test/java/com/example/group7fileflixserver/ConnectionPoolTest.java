@@ -0,0 +1,52 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConnectionPoolTest {
+
+    private String url;
+
+    @BeforeEach
+    void database() throws IOException {
+        url = "jdbc:sqlite:" + Files.createTempFile(TestServer.workspace(), "pool", ".db");
+    }
+
+    // A connection the database dropped is reopened on its next use instead of failing forever
+    @Test
+    void reopensDroppedConnections() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(url, SqlDialect.SQLITE, 1)) {
+            pool.write(conn -> conn.prepare("CREATE TABLE t (v INTEGER)").executeUpdate());
+            pool.write(conn -> conn.prepare("INSERT INTO t VALUES (42)").executeUpdate());
+
+            pool.read(conn -> {
+                conn.connection().close();
+                return null;
+            });
+            pool.write(conn -> {
+                conn.connection().close();
+                return null;
+            });
+
+            assertEquals(42, (int) pool.read(ConnectionPoolTest::value));
+            assertEquals(1, (int) pool.write(conn -> conn.prepare("UPDATE t SET v = 43").executeUpdate()));
+            assertEquals(43, (int) pool.read(ConnectionPoolTest::value));
+        }
+    }
+
+    private static int value(ConnectionPool.PooledConnection conn) throws SQLException {
+        PreparedStatement stmt = conn.prepare("SELECT v FROM t");
+        try (ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
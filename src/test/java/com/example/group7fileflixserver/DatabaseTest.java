@@ -0,0 +1,26 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseTest {
+
+    private static final String HASH = "0".repeat(64);
+
+    @BeforeAll
+    static void initialize() {
+        TestServer.workspace();
+        Database.initialize();
+    }
+
+    // Two uploads of one name can both pass the duplicate check; only one row may be saved
+    @Test
+    void filenamesAreUniquePerUser() {
+        assertTrue(Database.saveFile("uniqueuser", "report.pdf", 1, HASH));
+        assertFalse(Database.saveFile("uniqueuser", "report.pdf", 1, HASH));
+        assertTrue(Database.saveFile("otheruser", "report.pdf", 1, HASH));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Keyset pagination of LIST and SEARCH: walking every page must return each file exactly once,
+// in (sort column, id) order, including across rows that tie on the sort column
+class FileListingTest {
+
+    private static final String USER = "listinguser";
+    private static final String HASH = "1".repeat(64);
+    private static final int FILES = 23;
+
+    @BeforeAll
+    static void seed() {
+        TestServer.workspace();
+        Database.initialize();
+        for (int i = 0; i < FILES; i++) {
+            // Sizes repeat so SIZE pages split inside runs of equal values; names contain the
+            // cursor's separator
+            String filename = (i % 2 == 0 ? "report:" : "photo-") + String.format("%02d", (i * 7) % FILES);
+            assertTrue(Database.saveFile(USER, filename, i % 4, HASH));
+        }
+    }
+
+    @Test
+    void pagesCoverEveryFileOnceInOrder() throws SQLException {
+        for (FileListing.Sort sort : FileListing.Sort.values()) {
+            for (boolean descending : new boolean[] {false, true}) {
+                List<FileListing> walked = walk(null, null, sort, descending, 4);
+                assertEquals(FILES, walked.size(), sort + " descending=" + descending);
+                assertEquals(FILES, new HashSet<>(ids(walked)).size(), sort + " descending=" + descending);
+
+                List<FileListing> sorted = new ArrayList<>(walked);
+                sorted.sort(order(sort, descending));
+                assertEquals(ids(sorted), ids(walked), sort + " descending=" + descending);
+            }
+        }
+    }
+
+    @Test
+    void cursorsKeepTheirFilter() throws SQLException {
+        List<FileListing> prefixed = walk("report:", null, FileListing.Sort.SIZE, false, 3);
+        assertEquals((FILES + 1) / 2, prefixed.size());
+        assertTrue(prefixed.stream().allMatch(file -> file.filename().startsWith("report:")));
+
+        List<FileListing> containing = walk(null, "oto", FileListing.Sort.NAME, true, 2);
+        assertEquals(FILES / 2, containing.size());
+        assertTrue(containing.stream().allMatch(file -> file.filename().contains("oto")));
+    }
+
+    // SQLite compares filenames as UTF-8 bytes, where a supplementary character sorts above
+    // U+FFFF; the prefix range must still include names that continue with one
+    @Test
+    void prefixMatchesNamesContinuingWithSupplementaryCharacters() throws SQLException {
+        String user = "prefixuser";
+        List<String> matching = List.of("clip", "clip-a", "clip\uFFFD", "clip\uD83C\uDFAC.mp4", "clip\uDBFF\uDFFF");
+        for (String filename : matching) {
+            assertTrue(Database.saveFile(user, filename, 1, HASH));
+        }
+        for (String filename : List.of("cli", "cliq", "clj")) {
+            assertTrue(Database.saveFile(user, filename, 1, HASH));
+        }
+
+        List<FileListing> listed = Database.listFiles(user, "clip", null, FileListing.Sort.NAME, false, null, 20);
+        assertEquals(new HashSet<>(matching), listed.stream().map(FileListing::filename).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void prefixUpperBoundIncrementsTheLastCodePoint() {
+        assertEquals("clq", Database.prefixUpperBound("clp"));
+        assertEquals("a\uD83C\uDFAD", Database.prefixUpperBound("a\uD83C\uDFAC"));
+        assertEquals("a\uE000", Database.prefixUpperBound("a\uD7FF"));
+        assertEquals("b", Database.prefixUpperBound("a\uDBFF\uDFFF"));
+        assertNull(Database.prefixUpperBound("\uDBFF\uDFFF"));
+    }
+
+    @Test
+    void lastPageIsNotOverfetched() throws SQLException {
+        List<FileListing> all = Database.listFiles(USER, null, null, FileListing.Sort.NAME, false, null, FILES);
+        assertEquals(FILES, all.size());
+        List<FileListing> overfetched = Database.listFiles(USER, null, null, FileListing.Sort.NAME, false, null, FILES - 1);
+        assertEquals(FILES, overfetched.size());
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Database.listFiles(USER, null, null, FileListing.Sort.NAME, false, "no-separator", 5));
+        assertThrows(IllegalArgumentException.class,
+                () -> Database.listFiles(USER, null, null, FileListing.Sort.SIZE, false, "12:big", 5));
+    }
+
+    @Test
+    void listCommandFollowsItsCursor() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            Set<String> seen = new HashSet<>();
+            String cursor = "";
+            int pages = 0;
+            do {
+                out.writeUTF("LIST");
+                out.writeUTF(USER);
+                out.writeUTF("uploaded");
+                out.writeBoolean(true);
+                out.writeUTF(cursor);
+                out.writeInt(5);
+                out.flush();
+
+                assertTrue(in.readBoolean());
+                while (in.readBoolean()) {
+                    assertTrue(seen.add(in.readUTF()));
+                    in.readLong();
+                    in.readLong();
+                }
+                cursor = in.readUTF();
+                pages++;
+            } while (!cursor.isEmpty());
+            assertEquals(FILES, seen.size());
+            assertEquals((FILES + 4) / 5, pages);
+
+            out.writeUTF("LIST");
+            out.writeUTF(USER);
+            out.writeUTF("name");
+            out.writeBoolean(false);
+            out.writeUTF("garbage");
+            out.writeInt(5);
+            out.flush();
+            assertFalse(in.readBoolean());
+            assertEquals("INVALID_REQUEST", in.readUTF());
+        }
+    }
+
+    private static List<FileListing> walk(String prefix, String contains, FileListing.Sort sort,
+                                          boolean descending, int pageSize) throws SQLException {
+        List<FileListing> walked = new ArrayList<>();
+        String cursor = null;
+        while (true) {
+            List<FileListing> page = Database.listFiles(USER, prefix, contains, sort, descending, cursor, pageSize);
+            walked.addAll(page.subList(0, Math.min(page.size(), pageSize)));
+            if (page.size() <= pageSize) {
+                return walked;
+            }
+            cursor = page.get(pageSize - 1).cursor(sort);
+        }
+    }
+
+    private static Comparator<FileListing> order(FileListing.Sort sort, boolean descending) {
+        Comparator<FileListing> bySort = switch (sort) {
+            case NAME -> Comparator.comparing(FileListing::filename);
+            case SIZE -> Comparator.comparingLong(FileListing::size);
+            case UPLOADED -> Comparator.comparingLong(FileListing::uploadedAt);
+        };
+        Comparator<FileListing> order = bySort.thenComparingLong(FileListing::id);
+        return descending ? order.reversed() : order;
+    }
+
+    private static List<Long> ids(List<FileListing> files) {
+        return files.stream().map(FileListing::id).toList();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MultiplexedSessionTest {
+
+    private static final int TIMEOUT_MS = 10_000;
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    @Test
+    void finishedStreamDoesNotHoldUpOthersOnVirtualEngine() throws Exception {
+        finishedStreamDoesNotHoldUpOthers(EngineMode.VIRTUAL);
+    }
+
+    @Test
+    void finishedStreamDoesNotHoldUpOthersOnNioEngine() throws Exception {
+        finishedStreamDoesNotHoldUpOthers(EngineMode.NIO);
+    }
+
+    @Test
+    void versionTwoClientsKeepVersionTwo() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Client client = new Client(engine.getLocalPort(), 2)) {
+            assertEquals(2, client.version);
+            client.command(1, "HEARTBEAT");
+            assertEquals("HEARTBEAT_ACK", client.reply(1));
+        }
+    }
+
+    @Test
+    void sessionsDoNotHoldNioWorkers() throws Exception {
+        int sessions = Runtime.getRuntime().availableProcessors() * 2 + 4;
+        List<Client> clients = new ArrayList<>();
+        try (ConnectionEngine engine = TestServer.start(EngineMode.NIO)) {
+            try {
+                for (int i = 0; i < sessions; i++) {
+                    clients.add(new Client(engine.getLocalPort(), MultiplexedSession.VERSION));
+                }
+                try (Socket socket = new Socket("localhost", engine.getLocalPort())) {
+                    socket.setSoTimeout(TIMEOUT_MS);
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    out.writeUTF("HEARTBEAT");
+                    out.flush();
+                    assertEquals("HEARTBEAT_ACK", in.readUTF());
+                }
+            } finally {
+                for (Client client : clients) {
+                    client.close();
+                }
+            }
+        }
+    }
+
+    // An unknown command answers at once, leaving 2.4 MB of the client's frames for a stream
+    // nobody reads. They used to fill the stream's queue and block the session's reader.
+    private static void finishedStreamDoesNotHoldUpOthers(EngineMode mode) throws Exception {
+        try (ConnectionEngine engine = TestServer.start(mode);
+             Client client = new Client(engine.getLocalPort(), MultiplexedSession.VERSION)) {
+            client.frame(1, MultiplexedSession.DATA, utf("BOGUS"));
+            byte[] filler = new byte[60 * 1024];
+            for (int i = 0; i < 40; i++) {
+                client.frame(1, MultiplexedSession.DATA, filler);
+            }
+            client.frame(1, MultiplexedSession.END, new byte[0]);
+            client.command(2, "HEARTBEAT");
+
+            assertEquals("UNKNOWN_COMMAND", client.reply(1));
+            assertEquals("HEARTBEAT_ACK", client.reply(2));
+
+            // Stream 1 is done on both sides, so its ID can carry a new command
+            client.command(1, "HEARTBEAT");
+            assertEquals("HEARTBEAT_ACK", client.reply(1));
+        }
+    }
+
+    private static byte[] utf(String command) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(command);
+        return bytes.toByteArray();
+    }
+
+    // Minimal multiplexed client; replies are single readUTF strings, so reply() reads frames
+    // until the requested stream ends and skips frames for other streams it isn't asked about
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final Map<Integer, ByteArrayOutputStream> pending = new HashMap<>();
+        private final Set<Integer> ended = new HashSet<>();
+        final int version;
+
+        Client(int port, int version) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setSoTimeout(TIMEOUT_MS);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeUTF("HELLO");
+            out.writeInt(version);
+            out.flush();
+            assertEquals("HELLO", in.readUTF());
+            this.version = in.readInt();
+        }
+
+        void frame(int stream, byte type, byte[] payload) throws IOException {
+            out.writeInt(stream);
+            out.writeByte(type);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+        }
+
+        void command(int stream, String command) throws IOException {
+            frame(stream, MultiplexedSession.DATA, utf(command));
+            frame(stream, MultiplexedSession.END, new byte[0]);
+        }
+
+        String reply(int stream) throws IOException {
+            while (!ended.contains(stream)) {
+                int id = in.readInt();
+                byte type = in.readByte();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                if (type == MultiplexedSession.DATA) {
+                    pending.computeIfAbsent(id, key -> new ByteArrayOutputStream()).writeBytes(payload);
+                } else if (type == MultiplexedSession.END) {
+                    ended.add(id);
+                } else if (type == MultiplexedSession.RESET) {
+                    throw new IOException("Stream " + id + " was reset");
+                }
+            }
+            ended.remove(stream);
+            ByteArrayOutputStream bytes = pending.remove(stream);
+            return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())).readUTF();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
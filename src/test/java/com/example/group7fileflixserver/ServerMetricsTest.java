@@ -0,0 +1,50 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerMetricsTest {
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    @Test
+    void escapesLabelValues() {
+        assertEquals("a\\\\b\\\"c\\nd", ServerMetrics.escapeLabel("a\\b\"c\nd"));
+    }
+
+    @Test
+    void unknownCommandsShareOneBucket() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            for (int i = 0; i < 100; i++) {
+                out.writeUTF("JUNK\"} 1\nfake_metric " + i);
+                out.flush();
+                assertEquals("UNKNOWN_COMMAND", in.readUTF());
+            }
+            out.writeUTF("HEARTBEAT");
+            out.flush();
+            assertEquals("HEARTBEAT_ACK", in.readUTF());
+        }
+
+        String exposition = ServerMetrics.prometheus();
+        assertFalse(exposition.contains("fake_metric"), exposition);
+        assertFalse(exposition.contains("JUNK"), exposition);
+        assertTrue(exposition.contains("command=\"" + ServerMetrics.UNKNOWN_COMMAND + "\""), exposition);
+        assertTrue(exposition.contains("command=\"HEARTBEAT\""), exposition);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SessionManagerTest {
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    // A username with the token prefix would always be resolved as a token, never as the user
+    @Test
+    void usernamesCannotLookLikeTokens() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            assertEquals("REGISTER_FAILED", register(out, in, SessionManager.TOKEN_PREFIX + "alice"));
+            assertEquals("REGISTER_SUCCESS", register(out, in, "alice" + SessionManager.TOKEN_PREFIX));
+        }
+    }
+
+    private static String register(DataOutputStream out, DataInputStream in, String username) throws Exception {
+        out.writeUTF("REGISTER");
+        out.writeUTF(username);
+        out.writeUTF("secret-password");
+        out.flush();
+        return in.readUTF();
+    }
+}
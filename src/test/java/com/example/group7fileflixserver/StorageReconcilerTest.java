@@ -0,0 +1,57 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageReconcilerTest {
+
+    @BeforeAll
+    static void initialize() {
+        TestServer.workspace();
+        Database.initialize();
+    }
+
+    // Quarantined files are deleted once past retention, unless a file row still needs the blob
+    @Test
+    void expiresUnreferencedQuarantinedFiles() throws IOException {
+        Path root = Files.createTempDirectory(TestServer.workspace(), "reconcile");
+        BlobStore store = new BlobStore(root, new LocalStorageBackend(root.resolve("blobs")), null);
+        store.initialize();
+
+        String referencedHash = "a".repeat(64);
+        assertTrue(Database.saveFile("quarantineuser", "kept.bin", 3, referencedHash));
+        Path referenced = quarantined(store, referencedHash, 40);
+        Path expired = quarantined(store, "b".repeat(64), 40);
+        Path repeated = quarantined(store, "b".repeat(64) + ".1", 40);
+        Path recent = quarantined(store, "c".repeat(64), 2);
+
+        StorageReconciler reconciler = new StorageReconciler(store);
+        try {
+            reconciler.reconcile();
+        } finally {
+            reconciler.stop();
+        }
+
+        assertTrue(Files.exists(referenced));
+        assertFalse(Files.exists(expired));
+        assertFalse(Files.exists(repeated));
+        assertTrue(Files.exists(recent));
+    }
+
+    private static Path quarantined(BlobStore store, String name, int daysAgo) throws IOException {
+        Path file = store.quarantineDirectory().resolve("blobs").resolve(name.substring(0, 2)).resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] {1, 2, 3});
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysAgo)));
+        return file;
+    }
+}
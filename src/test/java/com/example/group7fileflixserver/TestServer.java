@@ -0,0 +1,40 @@
+package com.example.group7fileflixserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Runs in-process servers on a throwaway database, upload directory and log file. workspace()
+// must run before any server class is touched, because they read these settings when they load.
+final class TestServer {
+
+    private static Path root;
+
+    private TestServer() {
+    }
+
+    static synchronized Path workspace() {
+        if (root == null) {
+            try {
+                root = Files.createTempDirectory("fileflix-test");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            System.setProperty("fileflix.db.path", root.resolve("test.db").toString());
+            System.setProperty("fileflix.upload.dir", root.resolve("uploads").toString());
+            System.setProperty("fileflix.log.file", root.resolve("test-log.txt").toString());
+            System.setProperty("fileflix.bcrypt.cost", "4");
+            // The server prints a line per command; keep it out of the test output
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        return root;
+    }
+
+    static ConnectionEngine start(EngineMode mode) throws IOException {
+        workspace();
+        return FileServer.startEmbedded(mode, 0);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long RATE = 1024 * 1024;
+
+    @Test
+    void debitDoesNotWaitBehindASleepingAcquire() throws Exception {
+        TokenBucket bucket = new TokenBucket(RATE);
+        Thread sleeper = Thread.ofVirtual().start(() -> {
+            try {
+                bucket.acquire(RATE * 2);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+
+        long started = System.nanoTime();
+        bucket.debit(1024);
+        long tookMs = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(tookMs < 200, "debit waited " + tookMs + " ms");
+        sleeper.join();
+    }
+
+    @Test
+    void waitersStillShareTheRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(RATE);
+        bucket.acquire(RATE);
+        long started = System.nanoTime();
+        Thread first = Thread.ofVirtual().start(() -> acquireQuietly(bucket, RATE / 4));
+        Thread second = Thread.ofVirtual().start(() -> acquireQuietly(bucket, RATE / 4));
+        first.join();
+        second.join();
+        long tookMs = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(tookMs >= 400, "two quarter-second acquires finished in " + tookMs + " ms");
+    }
+
+    @Test
+    void smallTransfersAreOnlyDebited() throws Exception {
+        TokenBucket connection = new TokenBucket(RATE);
+        TokenBucket user = new TokenBucket(RATE);
+        TokenBucket server = new TokenBucket(RATE);
+        connection.debit(RATE * 10);
+        user.debit(RATE * 10);
+        server.debit(RATE * 10);
+
+        long started = System.nanoTime();
+        new Throttle(List.of(connection, user), server, true).acquire(Throttle.SLICE_BYTES);
+        long tookMs = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(tookMs < 200, "small transfer waited " + tookMs + " ms");
+    }
+
+    private static void acquireQuietly(TokenBucket bucket, long bytes) {
+        try {
+            bucket.acquire(bytes);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadDigestTest {
+
+    private static final String USER = "digestuser";
+    private static final byte[] CONTENT = "123456789".getBytes(StandardCharsets.US_ASCII);
+    // The CRC32C check value from RFC 3720
+    private static final String CONTENT_CRC32C = "e3069283";
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    @Test
+    void parsesKnownAlgorithms() {
+        String sha = sha256(CONTENT);
+        assertEquals("sha256:" + sha, UploadDigest.parse("SHA256:" + sha.toUpperCase()).toString());
+        assertEquals("crc32c:" + CONTENT_CRC32C, UploadDigest.parse("crc32c:" + CONTENT_CRC32C).toString());
+    }
+
+    @Test
+    void rejectsMalformedDigests() {
+        assertNull(UploadDigest.parse(""));
+        assertNull(UploadDigest.parse(sha256(CONTENT)));
+        assertNull(UploadDigest.parse("md5:" + "0".repeat(32)));
+        assertNull(UploadDigest.parse("sha256:" + "0".repeat(63)));
+        assertNull(UploadDigest.parse("crc32c:e306928g"));
+    }
+
+    @Test
+    void matchesTheReceivedContent() {
+        BlobStore.IncomingBlob blob = new BlobStore.IncomingBlob(Path.of("unused"), sha256(CONTENT), CONTENT.length);
+        assertTrue(UploadDigest.parse("sha256:" + sha256(CONTENT)).matches(blob, null));
+        assertFalse(UploadDigest.parse("sha256:" + "0".repeat(64)).matches(blob, null));
+
+        UploadDigest crc = UploadDigest.parse("crc32c:" + CONTENT_CRC32C);
+        Checksum checksum = crc.newChecksum();
+        assertTrue(checksum instanceof CRC32C);
+        checksum.update(CONTENT, 0, CONTENT.length);
+        assertTrue(crc.matches(blob, checksum));
+        assertFalse(UploadDigest.parse("crc32c:00000000").matches(blob, checksum));
+    }
+
+    @Test
+    void verifiedUploadAndRetrieveOverTheProtocol() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            assertEquals("INVALID_DIGEST", upload(out, in, "bad.txt", "sha256:nothex"));
+            assertEquals("CHECKSUM_MISMATCH", upload(out, in, "corrupt.txt", "crc32c:00000000"));
+            assertEquals("UPLOAD_SUCCESS", upload(out, in, "good.txt", "crc32c:" + CONTENT_CRC32C));
+            assertEquals("UPLOAD_SUCCESS", upload(out, in, "good2.txt", "sha256:" + sha256(CONTENT)));
+
+            // A rejected upload leaves no file behind
+            out.writeUTF("RETRIEVE_VERIFIED");
+            out.writeUTF(USER);
+            out.writeUTF("corrupt.txt");
+            out.flush();
+            assertFalse(in.readBoolean());
+            assertEquals("ACCESS_DENIED", in.readUTF());
+
+            out.writeUTF("RETRIEVE_VERIFIED");
+            out.writeUTF(USER);
+            out.writeUTF("good.txt");
+            out.flush();
+            assertTrue(in.readBoolean());
+            byte[] received = new byte[(int) in.readLong()];
+            assertEquals("sha256:" + sha256(CONTENT), in.readUTF());
+            in.readFully(received);
+            assertArrayEquals(CONTENT, received);
+        }
+    }
+
+    private static String upload(DataOutputStream out, DataInputStream in, String filename, String digest) throws Exception {
+        out.writeUTF("UPLOAD_VERIFIED");
+        out.writeUTF(USER);
+        out.writeUTF(filename);
+        out.writeLong(CONTENT.length);
+        out.writeUTF(digest);
+        out.write(CONTENT);
+        out.flush();
+        return in.readUTF();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadSessionManagerTest {
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    @Test
+    void acceptsSizesTheChunkBitmapCanTrack() {
+        assertTrue(UploadSessionManager.acceptsSize(0, 0));
+        assertTrue(UploadSessionManager.acceptsSize(UploadSessionManager.MAX_FILE_BYTES, UploadSessionManager.MAX_CHUNK_SIZE));
+        assertFalse(UploadSessionManager.acceptsSize(-1, UploadSessionManager.MIN_CHUNK_SIZE));
+        assertFalse(UploadSessionManager.acceptsSize(1L << 50, UploadSessionManager.MIN_CHUNK_SIZE));
+        assertFalse(UploadSessionManager.acceptsSize(Long.MAX_VALUE, UploadSessionManager.MAX_CHUNK_SIZE));
+    }
+
+    @Test
+    void oversizedSessionIsRefusedAndTheConnectionStaysUsable() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            // 2^50 bytes in 64 KB chunks used to overflow the chunk count to 0
+            out.writeUTF("UPLOAD_INIT");
+            out.writeUTF("sessionuser");
+            out.writeUTF("huge.bin");
+            out.writeLong(1L << 50);
+            out.writeInt(UploadSessionManager.MIN_CHUNK_SIZE);
+            out.flush();
+            assertEquals("UPLOAD_FAILED", in.readUTF());
+
+            out.writeUTF("HEARTBEAT");
+            out.flush();
+            assertEquals("HEARTBEAT_ACK", in.readUTF());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.group7fileflixserver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// A negative declared size used to slip past the quota check and lower the running total
+class UploadSizeTest {
+
+    private static final String USER = "sizeuser";
+
+    @BeforeAll
+    static void workspace() {
+        TestServer.workspace();
+    }
+
+    @Test
+    void batchWithNegativeSizeIsRejected() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeUTF("UPLOAD_BATCH");
+            out.writeUTF(USER);
+            out.writeInt(2);
+            out.writeUTF("negative.bin");
+            out.writeLong(-1_000_000_000_000L);
+            out.writeUTF("big.bin");
+            out.writeLong(10);
+            out.flush();
+            assertEquals("INVALID_BATCH", in.readUTF());
+            assertClosed(in);
+        }
+        assertFalse(Database.fileExistsForUser(USER, "negative.bin"));
+    }
+
+    @Test
+    void uploadWithNegativeSizeIsRejected() throws Exception {
+        for (String command : new String[] {"UPLOAD", "UPLOAD_Z"}) {
+            try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+                 Socket socket = new Socket("localhost", engine.getLocalPort())) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out.writeUTF(command);
+                out.writeUTF(USER);
+                out.writeUTF("negative-" + command + ".bin");
+                out.writeLong(-5);
+                if (command.equals("UPLOAD_Z")) {
+                    out.writeUTF(TransferCompression.IDENTITY);
+                }
+                out.flush();
+                assertEquals("UPLOAD_FAILED", in.readUTF(), command);
+                assertClosed(in);
+            }
+            assertFalse(Database.fileExistsForUser(USER, "negative-" + command + ".bin"));
+        }
+    }
+
+    @Test
+    void uploadSessionWithNegativeSizeIsRefused() throws Exception {
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeUTF("UPLOAD_INIT");
+            out.writeUTF(USER);
+            out.writeUTF("negative-session.bin");
+            out.writeLong(-5);
+            out.writeInt(UploadSessionManager.MIN_CHUNK_SIZE);
+            out.flush();
+            assertEquals("UPLOAD_FAILED", in.readUTF());
+        }
+    }
+
+    // A compressed body can arrive whole before the connection drops ahead of its end chunk; the
+    // received blob must not be left behind in the incoming directory
+    @Test
+    void compressedUploadCutBeforeItsEndChunkLeavesNoBlob() throws Exception {
+        byte[] content = "compressed content that never gets its end chunk".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(deflated)) {
+            deflater.write(content);
+        }
+        try (ConnectionEngine engine = TestServer.start(EngineMode.VIRTUAL);
+             Socket socket = new Socket("localhost", engine.getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeUTF("UPLOAD_Z");
+            out.writeUTF(USER);
+            out.writeUTF("cut.txt");
+            out.writeLong(content.length);
+            out.writeUTF(TransferCompression.DEFLATE);
+            out.writeInt(deflated.size());
+            deflated.writeTo(out);
+            out.flush();
+            socket.shutdownOutput();
+            assertEquals("UPLOAD_FAILED", in.readUTF());
+            assertClosed(in);
+        }
+        assertFalse(Database.fileExistsForUser(USER, "cut.txt"));
+        try (Stream<Path> left = Files.list(TestServer.workspace().resolve("uploads").resolve(".incoming"))) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    // The server closes without reading the rest of the request, so the client may see a reset
+    private static void assertClosed(DataInputStream in) {
+        try {
+            assertEquals(-1, in.read());
+        } catch (SocketException e) {
+            // closed
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}